@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.account;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import oap.reflect.Reflect;
+import oap.reflect.Reflection;
+import oap.ws.codec.WsCodec;
+import oap.ws.codec.WsCodecs;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static oap.benchmark.Benchmark.benchmark;
+
+/**
+ * Payload size and encode/decode time of {@link UserData.View} per codec. The view has no creator,
+ * so it is decoded into a map, the way a client without the class would.
+ */
+@Slf4j
+public class CodecPerformance {
+    private static final int SAMPLES = 100_000;
+    private static final Reflection MAP = Reflect.reflect( Map.class );
+
+    @Test
+    public void userView() {
+        var user = new UserData( new User( "john@example.com", "John", "Smith" ), Map.of( "org1", "ADMIN", "org2", "USER" ) );
+        user.addAccount( "org1", "acc1" );
+        user.addAccount( "org1", "acc2" );
+        user.user.defaultOrganization = "org1";
+
+        for( var codec : List.of( WsCodecs.JSON, WsCodecs.SMILE, WsCodecs.CBOR, WsCodecs.MESSAGE_PACK ) ) {
+            var bytes = encode( codec, user.view );
+            log.info( "{}: {} bytes", codec.contentType(), bytes.length );
+
+            benchmark( "encode " + codec.contentType(), SAMPLES, () -> encode( codec, user.view, OutputStream.nullOutputStream() ) )
+                .experiments( 3 ).run();
+            benchmark( "decode " + codec.contentType(), SAMPLES, () -> decode( codec, bytes ) )
+                .experiments( 3 ).run();
+        }
+    }
+
+    private static byte[] encode( WsCodec codec, Object value ) {
+        var out = new ByteArrayOutputStream();
+        encode( codec, value, out );
+        return out.toByteArray();
+    }
+
+    @SneakyThrows
+    private static void encode( WsCodec codec, Object value, OutputStream out ) {
+        codec.encode( value, out );
+    }
+
+    @SneakyThrows
+    private static Object decode( WsCodec codec, byte[] bytes ) {
+        return codec.decode( MAP, new ByteArrayInputStream( bytes ) );
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.account;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import oap.json.Binder;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static oap.benchmark.Benchmark.benchmark;
+
+/**
+ * Allocation per response of serializing through a String, as Response.send did, versus straight to bytes.
+ * The null output stream stands for the pooled buffers of the exchange.
+ */
+@Slf4j
+public class ResponseSerializationPerformance {
+    private static final int SAMPLES = 100_000;
+    private static final OutputStream POOLED_BUFFER = OutputStream.nullOutputStream();
+
+    @Test
+    public void serialize() {
+        var user = new UserData( new User( "john@example.com", "John", "Smith" ), Map.of( "org1", "ADMIN", "org2", "USER" ) );
+        user.addAccount( "org1", "acc1" );
+        user.addAccount( "org1", "acc2" );
+        user.user.defaultOrganization = "org1";
+
+        var organization = new OrganizationData( new Organization( "org1", "Organization", "organization description" ) );
+        organization.addOrUpdateAccount( new Account( "acc1", "account1" ) );
+        organization.addOrUpdateAccount( new Account( "acc2", "account2" ) );
+
+        measure( "UserData.View via String", () -> POOLED_BUFFER.write( Binder.json.marshal( user.view ).getBytes( UTF_8 ) ) );
+        measure( "UserData.View direct", () -> Binder.json.marshal( user.view, POOLED_BUFFER ) );
+        measure( "OrganizationData.View via String", () -> POOLED_BUFFER.write( Binder.json.marshal( organization.view ).getBytes( UTF_8 ) ) );
+        measure( "OrganizationData.View direct", () -> Binder.json.marshal( organization.view, POOLED_BUFFER ) );
+    }
+
+    private static void measure( String name, Serialization serialization ) {
+        var threads = ( com.sun.management.ThreadMXBean ) ManagementFactory.getThreadMXBean();
+        var thread = Thread.currentThread().getId();
+
+        benchmark( name, SAMPLES, () -> serialize( serialization ) ).experiments( 3 ).run();
+
+        long before = threads.getThreadAllocatedBytes( thread );
+        for( int i = 0; i < SAMPLES; i++ ) serialize( serialization );
+        long allocated = threads.getThreadAllocatedBytes( thread ) - before;
+
+        log.info( "{}: {} bytes allocated per response", name, allocated / SAMPLES );
+    }
+
+    @SneakyThrows
+    private static void serialize( Serialization serialization ) {
+        serialization.serialize();
+    }
+
+    @FunctionalInterface
+    private interface Serialization {
+        void serialize() throws Exception;
+    }
+}
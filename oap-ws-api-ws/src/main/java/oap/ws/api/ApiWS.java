@@ -34,6 +34,7 @@ import oap.reflect.Reflection;
 import oap.util.Lists;
 import oap.ws.Response;
 import oap.ws.WebServices;
+import oap.ws.WsCache;
 import oap.ws.WsMethod;
 import oap.ws.openapi.OpenapiIgnore;
 import org.joda.time.DateTime;
@@ -70,6 +71,7 @@ public class ApiWS {
     }
 
     @WsMethod( produces = "text/plain", path = "/", method = GET, description = "Generates description of WS method with parameters and result" )
+    @WsCache( ttl = 60 * 60 * 1000 )
     public String api( Optional<Boolean> deprecated ) {
         boolean withDeprecated = deprecated.orElse( true );
         String result = "# SERVICES " + "#".repeat( 69 ) + "\n";
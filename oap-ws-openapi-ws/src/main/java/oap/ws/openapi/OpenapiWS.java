@@ -26,6 +26,7 @@ package oap.ws.openapi;
 
 import io.swagger.v3.oas.models.OpenAPI;
 import lombok.extern.slf4j.Slf4j;
+import oap.ws.WsCache;
 import oap.ws.WsMethod;
 import oap.ws.WsParam;
 import oap.ws.validate.ValidationErrors;
@@ -53,6 +54,7 @@ public class OpenapiWS {
      * @return openapi documentation
      */
     @WsMethod( path = "/", method = GET, description = "Generates OpenAPI 3.0 json document" )
+    @WsCache( ttl = 60 * 60 * 1000 )
     @WsValidate( { "isValid" } )
     public OpenAPI openapi( @WsParam Optional<Boolean> skipDeprecated ) {
         return openapi.generateOpenApi( skipDeprecated.orElse( true ) );
@@ -30,37 +30,51 @@ import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import static java.util.concurrent.TimeUnit.MINUTES;
+
 import static oap.ws.sso.WsSecurity.SYSTEM;
 
+/**
+ * Tokens are verified once and kept verified for a minute at most, but never past their expiration: a request checks
+ * a token several times and a batch of requests carries the same token in each of them.
+ */
 @Slf4j
 public class JWTExtractor {
 
     public static final String BEARER = "Bearer ";
-    private final String secret;
-    private final String issuer;
     private final SecurityRoles roles;
+    private final JWTVerifier verifier;
+    private final Cache<String, DecodedJWT> verified = CacheBuilder.newBuilder()
+        .maximumSize( 10000 )
+        .expireAfterWrite( 1, MINUTES )
+        .build();
 
     public JWTExtractor( String secret, String issuer, SecurityRoles roles ) {
-        this.secret = secret;
-        this.issuer = issuer;
         this.roles = roles;
+        this.verifier = JWT.require( Algorithm.HMAC256( secret ) )
+            .withIssuer( issuer )
+            .build();
     }
 
     protected DecodedJWT decodeJWT( String token ) {
         if( token == null )
             return null;
-        Algorithm algorithm = Algorithm.HMAC256( secret );
-        JWTVerifier verifier = JWT.require( algorithm )
-            .withIssuer( issuer )
-            .build();
-        return verifier.verify( token );
+        var decoded = verified.getIfPresent( token );
+        if( decoded != null && ( decoded.getExpiresAt() == null || decoded.getExpiresAt().after( new Date() ) ) )
+            return decoded;
+        decoded = verifier.verify( token );
+        verified.put( token, decoded );
+        return decoded;
     }
 
     public boolean verifyToken( String token ) {
@@ -27,6 +27,7 @@ package oap.ws.sso;
 import oap.http.Cookie;
 import oap.http.server.nio.HttpServerExchange;
 import oap.ws.Response;
+import oap.ws.SessionKey;
 import oap.ws.SessionManager;
 import org.joda.time.DateTime;
 
@@ -41,6 +42,8 @@ public class SSO {
     public static final String REFRESH_TOKEN_KEY = "refreshToken";
     public static final String SESSION_USER_KEY = "loggedUser";
     public static final String ISSUER = "issuer";
+    public static final SessionKey<User> SESSION_USER = SessionKey.of( SESSION_USER_KEY, User.class );
+    public static final SessionKey<String> SESSION_ISSUER = SessionKey.of( ISSUER, String.class );
 
     @Nullable
     public static String getAuthentication( HttpServerExchange exchange ) {
@@ -27,6 +27,7 @@ package oap.ws.sso.interceptor;
 import lombok.extern.slf4j.Slf4j;
 import oap.ws.InvocationContext;
 import oap.ws.Response;
+import oap.ws.SessionKey;
 import oap.ws.interceptor.Interceptor;
 import oap.ws.sso.Authenticator;
 import oap.ws.sso.User;
@@ -35,12 +36,13 @@ import java.util.Optional;
 
 import static oap.http.Http.StatusCode.CONFLICT;
 import static oap.http.Http.StatusCode.UNAUTHORIZED;
-import static oap.ws.sso.SSO.ISSUER;
-import static oap.ws.sso.SSO.SESSION_USER_KEY;
+import static oap.ws.sso.SSO.SESSION_ISSUER;
+import static oap.ws.sso.SSO.SESSION_USER;
 
 @Slf4j
 public class ApiKeyInterceptor implements Interceptor {
     public static final String SESSION_API_KEY_AUTHENTICATED = "apiKeyAuthenticated";
+    public static final SessionKey<Boolean> SESSION_API_KEY = SessionKey.of( SESSION_API_KEY_AUTHENTICATED, Boolean.class );
     private final Authenticator authenticator;
 
     public ApiKeyInterceptor( Authenticator authenticator ) {
@@ -55,15 +57,15 @@ public class ApiKeyInterceptor implements Interceptor {
         var apiKey = context.exchange.getStringParameter( "apiKey" );
         if( apiKey == null ) return Optional.empty();
 
-        if( context.session.containsKey( SESSION_USER_KEY ) )
+        if( context.session.contains( SESSION_USER ) )
             return Optional.of( new Response( CONFLICT, "invoking service with apiKey while logged in" ) );
 
         var authentication = authenticator.authenticateWithApiKey( accessKey, apiKey );
         if( authentication.isPresent() ) {
             User user = authentication.get().user;
-            context.session.set( SESSION_USER_KEY, user );
-            context.session.set( SESSION_API_KEY_AUTHENTICATED, true );
-            context.session.set( ISSUER, this.getClass().getSimpleName() );
+            context.session.set( SESSION_USER, user );
+            context.session.set( SESSION_API_KEY, true );
+            context.session.set( SESSION_ISSUER, this.getClass().getSimpleName() );
             log.trace( "set user {} into session {}", user, context.session );
             return Optional.empty();
         }
@@ -72,13 +74,11 @@ public class ApiKeyInterceptor implements Interceptor {
 
     @Override
     public void after( Response response, InvocationContext context ) {
-        context.session.<Boolean>get( SESSION_API_KEY_AUTHENTICATED ).ifPresent( apiKeyAuthentication -> {
-            if( apiKeyAuthentication ) {
-                log.trace( "removing temporary authentication of {}", context.session.get( SESSION_USER_KEY ) );
-                context.session.remove( SESSION_USER_KEY );
-                context.session.remove( SESSION_API_KEY_AUTHENTICATED );
-                context.session.remove( ISSUER );
-            }
-        } );
+        if( Boolean.TRUE.equals( context.session.get( SESSION_API_KEY ) ) ) {
+            log.trace( "removing temporary authentication of {}", context.session.get( SESSION_USER ) );
+            context.session.remove( SESSION_USER );
+            context.session.remove( SESSION_API_KEY );
+            context.session.remove( SESSION_ISSUER );
+        }
     }
 }
@@ -43,8 +43,8 @@ import java.util.Optional;
 
 import static oap.http.Http.StatusCode.FORBIDDEN;
 import static oap.http.Http.StatusCode.UNAUTHORIZED;
-import static oap.ws.sso.SSO.ISSUER;
-import static oap.ws.sso.SSO.SESSION_USER_KEY;
+import static oap.ws.sso.SSO.SESSION_ISSUER;
+import static oap.ws.sso.SSO.SESSION_USER;
 import static oap.ws.sso.WsSecurity.SYSTEM;
 
 @Slf4j
@@ -73,7 +73,7 @@ public class JWTSecurityInterceptor implements Interceptor {
     public Optional<Response> before( InvocationContext context ) {
         String organization = null;
         String jwtToken = SSO.getAuthentication( context.exchange );
-        Optional<User> sessionUserKey = context.session.get( SESSION_USER_KEY );
+        Optional<User> sessionUserKey = Optional.ofNullable( context.session.get( SESSION_USER ) );
         String issuerName = this.getClass().getSimpleName();
 
         if( jwtToken != null && ( sessionUserKey.isEmpty() || issuerFromContext( context ).equals( issuerName ) ) ) {
@@ -91,10 +91,10 @@ public class JWTSecurityInterceptor implements Interceptor {
             if( user == null ) {
                 return Optional.of( new Response( FORBIDDEN, "User not found with email: " + email ) );
             }
-            context.session.set( SESSION_USER_KEY, user );
-            context.session.set( ISSUER, issuerName );
+            context.session.set( SESSION_USER, user );
+            context.session.set( SESSION_ISSUER, issuerName );
         }
-        Optional<WsSecurity> wss = context.method.findAnnotation( WsSecurity.class );
+        Optional<WsSecurity> wss = context.annotation( WsSecurity.class );
         if( wss.isEmpty() ) {
             return Optional.empty();
         }
@@ -121,7 +121,8 @@ public class JWTSecurityInterceptor implements Interceptor {
     }
 
     private String issuerFromContext( InvocationContext context ) {
-        return context.session.get( ISSUER ).map( Object::toString ).orElse( "" );
+        var issuer = context.session.get( SESSION_ISSUER );
+        return issuer != null ? issuer : "";
     }
 
     private boolean hasRealmMismatchError( String organization, boolean useOrganizationLogin, String realmString ) {
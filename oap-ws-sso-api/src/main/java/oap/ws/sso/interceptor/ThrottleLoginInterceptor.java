@@ -37,7 +37,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import static oap.http.Http.StatusCode.FORBIDDEN;
-import static oap.ws.sso.SSO.SESSION_USER_KEY;
+import static oap.ws.sso.SSO.SESSION_USER;
 import static org.joda.time.DateTimeZone.UTC;
 
 /**
@@ -66,7 +66,7 @@ public class ThrottleLoginInterceptor implements Interceptor {
     @Override
     public Optional<Response> before( InvocationContext context ) {
         var id = context.session.id;
-        if( validateId( id ) || context.session.containsKey( SESSION_USER_KEY ) )
+        if( validateId( id ) || context.session.contains( SESSION_USER ) )
             return Optional.empty();
         log.trace( "Please wait {} before next attempt", Dates.durationToString( delay ) );
         return Optional.of( new Response( FORBIDDEN, "Please wait " + Dates.durationToString( delay ) + " before next attempt" ) );
@@ -29,9 +29,8 @@ import javassist.util.proxy.ProxyObject;
 import oap.json.Binder;
 import oap.reflect.Reflect;
 import oap.reflect.ReflectException;
-import oap.reflect.Reflection;
-import oap.util.Stream;
 import oap.util.Throwables;
+import oap.ws.ArgumentFrame;
 import oap.ws.WsClientException;
 import oap.ws.validate.ValidationErrors;
 import oap.ws.validate.Validators;
@@ -40,12 +39,9 @@ import org.objenesis.ObjenesisStd;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Function;
 
-import static oap.util.Pair.__;
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
@@ -117,10 +113,9 @@ public class ValidationErrorsAssertion extends AbstractAssert<ValidationErrorsAs
 
                 var parameters = method.parameters;
 
-                Map<Reflection.Parameter, Object> originalValues = Stream.of( parameters )
-                    .zipWithIndex()
-                    .<Reflection.Parameter, Object>map( ( parameter, i ) -> __( parameter, Binder.json.marshal( args[i] ) ) )
-                    .toMap();
+                var marshalled = new Object[args.length];
+                for( int i = 0; i < args.length; i++ ) marshalled[i] = Binder.json.marshal( args[i] );
+                var originalValues = new ArgumentFrame( parameters, marshalled );
 
                 paramErrors = paramErrors.validateParameters( originalValues, method, instance, true );
 
@@ -129,9 +124,7 @@ public class ValidationErrorsAssertion extends AbstractAssert<ValidationErrorsAs
                     return null;
                 }
 
-                var values = new LinkedHashMap<Reflection.Parameter, Object>();
-
-                for( int i = 0; i < parameters.size(); i++ ) values.put( parameters.get( i ), args[i] );
+                var values = new ArgumentFrame( parameters, args );
 
                 paramErrors = paramErrors.validateParameters( values, method, instance, false );
 
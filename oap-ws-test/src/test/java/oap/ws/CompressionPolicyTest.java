@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressionPolicyTest {
+    @Test
+    public void acceptsGzip() {
+        assertThat( CompressionPolicy.acceptsGzip( null ) ).isFalse();
+        assertThat( CompressionPolicy.acceptsGzip( "gzip, deflate, br" ) ).isTrue();
+        assertThat( CompressionPolicy.acceptsGzip( "deflate, GZIP;q=0.5" ) ).isTrue();
+        assertThat( CompressionPolicy.acceptsGzip( "*" ) ).isTrue();
+        assertThat( CompressionPolicy.acceptsGzip( "gzip;q=0" ) ).isFalse();
+        assertThat( CompressionPolicy.acceptsGzip( "identity" ) ).isFalse();
+    }
+
+    @Test
+    public void compressible() {
+        var policy = new CompressionPolicy();
+
+        assertThat( policy.compressible( "application/json; charset=UTF-8" ) ).isTrue();
+        assertThat( policy.compressible( "image/png" ) ).isFalse();
+        assertThat( policy.compressible( null ) ).isFalse();
+    }
+
+    @Test
+    public void with() throws NoSuchMethodException {
+        var policy = new CompressionPolicy();
+
+        assertThat( policy.with( null ) ).isSameAs( policy );
+        assertThat( policy.with( annotation( "disabled" ) ) ).isNull();
+
+        var overridden = policy.with( annotation( "small" ) );
+        assertThat( overridden.minSize ).isEqualTo( 16 );
+        assertThat( overridden.level ).isEqualTo( policy.level );
+        assertThat( overridden.contentTypes ).containsExactly( "text/plain" );
+
+        policy.enabled = false;
+        assertThat( policy.with( null ) ).isNull();
+    }
+
+    private static WsCompression annotation( String method ) throws NoSuchMethodException {
+        return Methods.class.getMethod( method ).getAnnotation( WsCompression.class );
+    }
+
+    public static class Methods {
+        @WsCompression( enabled = false )
+        public void disabled() {
+        }
+
+        @WsCompression( minSize = 16, contentTypes = "text/plain" )
+        public void small() {
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.application.testng.KernelFixture;
+import oap.testng.Fixtures;
+import org.testng.annotations.Test;
+
+import static oap.benchmark.Benchmark.benchmark;
+import static oap.http.Http.StatusCode.BAD_REQUEST;
+import static oap.http.Http.StatusCode.NOT_FOUND;
+import static oap.http.testng.HttpAsserts.assertGet;
+import static oap.http.testng.HttpAsserts.httpUrl;
+import static oap.io.Resources.urlOrThrow;
+
+/**
+ * Routine client errors: a missing required parameter, a malformed one and an unknown path.
+ * Run with and without {@link WsClientException#stackless(String)} and guarded logging to compare.
+ */
+public class ErrorPathPerformance extends Fixtures {
+    private static final int SAMPLES = 10_000;
+    private static final int EXPERIMENTS = 5;
+
+    public ErrorPathPerformance() {
+        fixture( new KernelFixture( urlOrThrow( getClass(), "/application.test.conf" ) ) );
+    }
+
+    @Test
+    public void clientErrors() {
+        benchmark( "400-missing", SAMPLES, () -> assertGet( httpUrl( "/x/v/math/sumab?a=1" ) ).hasCode( BAD_REQUEST ) )
+            .experiments( EXPERIMENTS )
+            .run();
+        benchmark( "400-malformed", SAMPLES, () -> assertGet( httpUrl( "/x/v/math/sumab?a=1&b=x" ) ).hasCode( BAD_REQUEST ) )
+            .experiments( EXPERIMENTS )
+            .run();
+        benchmark( "404", SAMPLES, () -> assertGet( httpUrl( "/x/v/math/unknown" ) ).hasCode( NOT_FOUND ) )
+            .experiments( EXPERIMENTS )
+            .run();
+        benchmark( "200", SAMPLES, () -> assertGet( httpUrl( "/x/v/math/sumab?a=1&b=2" ) ).isOk() )
+            .experiments( EXPERIMENTS )
+            .run();
+    }
+}
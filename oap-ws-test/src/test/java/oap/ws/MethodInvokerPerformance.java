@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import lombok.SneakyThrows;
+import oap.reflect.Reflect;
+import org.testng.annotations.Test;
+
+import static oap.benchmark.Benchmark.benchmark;
+
+/**
+ * Reflective {@link oap.reflect.Reflection.Method#invoke(Object, Object...)} versus {@link MethodInvoker}.
+ */
+public class MethodInvokerPerformance {
+    private static final int SAMPLES = 10_000_000;
+    private static final int EXPERIMENTS = 5;
+
+    @Test
+    public void invoke() {
+        var instance = new TestWS();
+        var method = Reflect.reflect( TestWS.class ).method( "sum" ).orElseThrow();
+        var invoker = MethodInvoker.of( method, instance );
+        var args = new Object[] { 1, "2", 3L };
+
+        benchmark( "reflection", SAMPLES, () -> method.invoke( instance, args ) )
+            .experiments( EXPERIMENTS )
+            .run();
+        benchmark( "method-handle", SAMPLES, () -> invoke( invoker, args ) )
+            .experiments( EXPERIMENTS )
+            .run();
+    }
+
+    @SneakyThrows
+    private static Object invoke( MethodInvoker invoker, Object[] args ) {
+        return invoker.invoke( args );
+    }
+
+    @SuppressWarnings( "unused" )
+    public static class TestWS {
+        public long sum( int a, String b, long c ) {
+            return a + b.length() + c;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.reflect.Reflect;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MethodInvokerTest {
+    private final TestWS instance = new TestWS();
+
+    private MethodInvoker invoker( String name ) {
+        return MethodInvoker.of( Reflect.reflect( TestWS.class ).method( name ).orElseThrow(), instance );
+    }
+
+    @Test
+    public void invoke() throws Throwable {
+        assertThat( invoker( "sum" ).invoke( new Object[] { 1, 2L } ) ).isEqualTo( 3L );
+        assertThat( invoker( "nothing" ).invoke( new Object[0] ) ).isNull();
+        assertThat( invoker( "hidden" ).invoke( new Object[] { "a" } ) ).isEqualTo( "a!" );
+    }
+
+    @Test
+    public void exceptionIsNotWrapped() {
+        assertThatThrownBy( () -> invoker( "fail" ).invoke( new Object[0] ) )
+            .isExactlyInstanceOf( WsClientException.class )
+            .hasMessage( "fail" );
+    }
+
+    @SuppressWarnings( "unused" )
+    private static class TestWS {
+        public long sum( int a, long b ) {
+            return a + b;
+        }
+
+        public void nothing() {}
+
+        public String hidden( String a ) {
+            return a + "!";
+        }
+
+        public String fail() {
+            throw new WsClientException( "fail" );
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static oap.http.Http.ContentType.APPLICATION_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseTest {
+    private static final int ELEMENTS = 200_000;
+
+    /**
+     * Compressed bytes reach the client while the stream is still being read: the body is never held as a whole.
+     */
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void gzipStreamedWritesWhileReading() throws IOException {
+        var sink = new ByteArrayOutputStream();
+        var writtenHalfway = new long[1];
+        var stream = IntStream.range( 0, ELEMENTS ).mapToObj( i -> {
+            if( i == ELEMENTS / 2 ) writtenHalfway[0] = sink.size();
+            return Map.of( "i", i, "s", "s" + i );
+        } );
+
+        var response = Response.ok().withBody( stream ).withContentType( APPLICATION_JSON );
+        assertThat( response.streamed() ).isTrue();
+        ( ( Consumer<OutputStream> ) response.gzipStreamed( Deflater.BEST_SPEED ).body ).accept( sink );
+
+        assertThat( writtenHalfway[0] ).isGreaterThan( 0 );
+        try( var in = new GZIPInputStream( new ByteArrayInputStream( sink.toByteArray() ) ) ) {
+            var json = new String( in.readAllBytes(), UTF_8 );
+            assertThat( json ).startsWith( "[{" ).endsWith( "}]" ).contains( "\"s\":\"s" + ( ELEMENTS - 1 ) + "\"" );
+        }
+    }
+}
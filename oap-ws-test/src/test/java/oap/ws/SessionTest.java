@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SessionTest {
+    private static final SessionKey<String> USER = SessionKey.of( "sessionTestUser", String.class );
+
+    @Test
+    public void keys() {
+        var session = new Session( "s" );
+        session.set( USER, "alice" );
+        session.set( "adhoc", 1 );
+
+        assertThat( session.get( USER ) ).isEqualTo( "alice" );
+        assertThat( session.<String>get( "sessionTestUser" ) ).contains( "alice" );
+        assertThat( session.attributes() ).isEqualTo( Map.of( "sessionTestUser", "alice", "adhoc", 1 ) );
+
+        session.remove( "sessionTestUser" );
+        assertThat( session.contains( USER ) ).isFalse();
+
+        assertThat( SessionKey.of( "sessionTestUser", String.class ) ).isSameAs( USER );
+        assertThatThrownBy( () -> SessionKey.of( "sessionTestUser", Integer.class ) )
+            .isInstanceOf( IllegalArgumentException.class );
+    }
+
+    @Test
+    public void keyInternedAfterSession() {
+        var session = new Session( "s", Map.of( "sessionTestLate", 1L ), null );
+        var late = SessionKey.of( "sessionTestLate", Long.class );
+
+        assertThat( session.get( late ) ).isEqualTo( 1L );
+        session.set( late, 2L );
+        assertThat( session.<Long>get( "sessionTestLate" ) ).contains( 2L );
+        assertThat( new Session( "t", session.attributes(), null ).get( late ) ).isEqualTo( 2L );
+
+        session.invalidate();
+        assertThat( session.attributes() ).isEmpty();
+    }
+}
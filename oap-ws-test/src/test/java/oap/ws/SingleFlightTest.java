@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+    @Test
+    public void sharesCallInFlight() {
+        var flights = new SingleFlight<String, Integer>();
+        var calls = new AtomicInteger();
+        var pending = new CompletableFuture<Integer>();
+
+        var first = flights.call( "a", () -> {
+            calls.incrementAndGet();
+            return pending;
+        } );
+        var second = flights.call( "a", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture( 2 );
+        } );
+        var other = flights.call( "b", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture( 3 );
+        } );
+
+        assertThat( second ).isSameAs( first );
+        assertThat( other.join() ).isEqualTo( 3 );
+
+        pending.complete( 1 );
+        assertThat( second.join() ).isEqualTo( 1 );
+        assertThat( calls ).hasValue( 2 );
+        assertThat( flights.size() ).isZero();
+
+        assertThat( flights.call( "a", () -> CompletableFuture.completedFuture( 4 ) ).join() ).isEqualTo( 4 );
+    }
+
+    @Test
+    public void failure() {
+        var flights = new SingleFlight<String, Integer>();
+        var pending = new CompletableFuture<Integer>();
+
+        var first = flights.call( "a", () -> pending );
+        var second = flights.call( "a", () -> CompletableFuture.completedFuture( 2 ) );
+        pending.completeExceptionally( new WsClientException( "failed" ) );
+
+        assertThatThrownBy( second::join )
+            .isInstanceOf( CompletionException.class )
+            .hasCauseInstanceOf( WsClientException.class );
+        assertThat( first ).isCompletedExceptionally();
+
+        var thrown = flights.call( "a", () -> {
+            throw new IllegalStateException( "failed" );
+        } );
+        assertThat( thrown ).isCompletedExceptionally();
+        assertThat( flights.size() ).isZero();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import oap.application.testng.KernelFixture;
+import oap.testng.Fixtures;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.undertow.util.StatusCodes.SERVICE_UNAVAILABLE;
+import static oap.http.Http.ContentType.APPLICATION_JSON;
+import static oap.http.Http.StatusCode.OK;
+import static oap.http.testng.HttpAsserts.assertGet;
+import static oap.http.testng.HttpAsserts.httpUrl;
+import static oap.io.Resources.urlOrThrow;
+import static oap.util.Pair.__;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+public class WebServicesExecutorTest extends Fixtures {
+    private static final int REQUESTS = 64;
+    private static final long BLOCKING_MS = 100;
+    private static final int PARTIES = 16;
+
+    private final KernelFixture kernelFixture;
+
+    public WebServicesExecutorTest() {
+        kernelFixture = fixture( new KernelFixture( urlOrThrow( getClass(), "/application.test.conf" ) ) );
+    }
+
+    /**
+     * Every invocation waits for all of them to run at once, which a service confined to a few threads never does.
+     */
+    @Test
+    public void platformRunsBlockingCallsConcurrently() throws Exception {
+        var responses = concurrently( PARTIES, "/blocking/platform/await?parties=" + PARTIES );
+        for( var response : responses ) response.get();
+
+        var service = service( "blocking-platform" );
+        assertThat( service.maxRunning.get() ).isEqualTo( PARTIES );
+        assertThat( service.threads ).noneMatch( name -> name.startsWith( "XNIO-" ) );
+    }
+
+    @Test
+    public void virtualDoesNotFallBack() {
+        log.info( "virtual threads supported: {}", WsExecutors.virtualThreadsSupported() );
+
+        if( WsExecutors.virtualThreadsSupported() ) WsExecutors.virtual( "ws-test" ).shutdown();
+        else assertThatThrownBy( () -> WsExecutors.virtual( "ws-test" ) ).isInstanceOf( WsException.class );
+    }
+
+    @Test
+    public void cappedHonorsMaxConcurrency() throws Exception {
+        var responses = concurrently( PARTIES, "/blocking/capped/sleep" );
+        for( var response : responses ) response.get();
+
+        var service = service( "blocking-capped" );
+        assertThat( service.maxRunning.get() ).isBetween( 1, 4 );
+        assertThat( service.threads ).noneMatch( name -> name.startsWith( "XNIO-" ) );
+    }
+
+    @Test
+    public void shedding() throws Exception {
+        var clients = Executors.newFixedThreadPool( REQUESTS );
+        try {
+            var codes = new ArrayList<Future<Integer>>();
+            for( int i = 0; i < REQUESTS; i++ )
+                codes.add( clients.submit( () -> {
+                    var code = new AtomicInteger();
+                    assertGet( httpUrl( "/blocking/shedding/sleep" ) ).satisfies( response -> {
+                        code.set( response.code );
+                        if( response.code == SERVICE_UNAVAILABLE )
+                            assertThat( response.headers ).contains( __( "Retry-After", "1" ) );
+                    } );
+                    return code.get();
+                } ) );
+
+            var ok = 0;
+            var rejected = 0;
+            for( var code : codes ) {
+                if( code.get() == OK ) ok++;
+                else if( code.get() == SERVICE_UNAVAILABLE ) rejected++;
+            }
+            assertThat( ok ).isGreaterThanOrEqualTo( 4 );
+            assertThat( rejected ).isGreaterThan( 0 );
+            assertThat( ok + rejected ).isEqualTo( REQUESTS );
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private BlockingWS service( String name ) {
+        return ( BlockingWS ) kernelFixture.kernel.service( "modules.oap-ws-validate-test." + name ).orElseThrow();
+    }
+
+    private static List<Future<?>> concurrently( int requests, String path ) {
+        var clients = Executors.newFixedThreadPool( requests );
+        try {
+            var responses = new ArrayList<Future<?>>();
+            for( int i = 0; i < requests; i++ )
+                responses.add( clients.submit( () -> assertGet( httpUrl( path ) ).responded( OK, "OK", APPLICATION_JSON, "true" ) ) );
+            return responses;
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    public static class BlockingWS {
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger running = new AtomicInteger();
+
+        @SneakyThrows
+        public boolean sleep() {
+            enter();
+            try {
+                Thread.sleep( BLOCKING_MS );
+                return true;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return false if fewer than parties invocations ran at once within 10s
+         */
+        @SneakyThrows
+        public boolean await( int parties ) {
+            enter();
+            try {
+                long deadline = System.currentTimeMillis() + 10000;
+                while( maxRunning.get() < parties )
+                    if( System.currentTimeMillis() > deadline ) return false;
+                    else Thread.sleep( 1 );
+                return true;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        private void enter() {
+            maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+            threads.add( Thread.currentThread().getName() );
+        }
+    }
+}
@@ -34,12 +34,16 @@ import java.util.Map;
 import static oap.http.server.nio.HttpServerExchange.HttpMethod.GET;
 import static oap.http.testng.HttpAsserts.assertGet;
 import static oap.http.testng.HttpAsserts.httpUrl;
+import static oap.http.testng.HttpAsserts.reset;
 import static oap.io.Resources.urlOrThrow;
 import static oap.ws.WsParam.From.SESSION;
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class WebServicesSessionTest extends Fixtures {
+    private final KernelFixture kernelFixture;
+
     public WebServicesSessionTest() {
-        fixture( new KernelFixture( urlOrThrow( getClass(), "/application.test.conf" ) ) );
+        kernelFixture = fixture( new KernelFixture( urlOrThrow( getClass(), "/application.test.conf" ) ) );
     }
 
     @Test
@@ -60,6 +64,23 @@ public class WebServicesSessionTest extends Fixtures {
             .hasBody( "vvv" );
     }
 
+    @Test
+    public void readingCreatesNoSession() {
+        reset();
+        var sessionManager = kernelFixture.service( "oap-ws", SessionManager.class );
+        var sessions = sessionManager.size();
+
+        assertGet( httpUrl( "/session/get" ) )
+            .satisfies( response -> assertThat( response.headers ).noneMatch( header -> header._1.equalsIgnoreCase( "Set-Cookie" ) ) );
+        assertThat( sessionManager.size() ).isEqualTo( sessions );
+
+        assertGet( httpUrl( "/session/putDirectly" ), Map.of( "value", "vvv" ), Map.of() )
+            .hasCode( Http.StatusCode.NO_CONTENT )
+            .satisfies( response -> assertThat( response.headers ).anyMatch( header -> header._1.equalsIgnoreCase( "Set-Cookie" )
+                && header._2.startsWith( SessionManager.COOKIE_ID + "=" ) ) );
+        assertThat( sessionManager.size() ).isEqualTo( sessions + 1 );
+    }
+
     @Test
     public void respondHtmlContentType() {
         assertGet( httpUrl( "/session/putDirectly" ), Map.of( "value", "vvv" ), Map.of() )
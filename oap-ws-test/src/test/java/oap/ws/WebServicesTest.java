@@ -23,6 +23,10 @@
  */
 package oap.ws;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.undertow.util.StatusCodes;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import oap.application.testng.KernelFixture;
 import oap.http.Client;
@@ -39,9 +43,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.RetentionPolicy;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 import java.util.zip.GZIPOutputStream;
 
 import static oap.http.Http.ContentType.APPLICATION_JSON;
@@ -190,6 +205,194 @@ public class WebServicesTest extends Fixtures {
             .respondedJson( "[\"1str\",\"2str\"]" );
     }
 
+    @Test
+    public void maxBodySize() {
+        assertPost( httpUrl( "/x/v/limited/json" ), "{\"i\":1,\"s\":\"sss\"}", APPLICATION_JSON )
+            .respondedJson( "{\"i\":1,\"s\":\"sss\"}" );
+        assertPost( httpUrl( "/x/v/limited/json" ), "{\"i\":1,\"s\":\"" + "s".repeat( 64 ) + "\"}", APPLICATION_JSON )
+            .hasCode( StatusCodes.REQUEST_ENTITY_TOO_LARGE );
+    }
+
+    @Test
+    public void completionStage() {
+        assertGet( httpUrl( "/x/v/math/async?i=1&s=sss" ) )
+            .respondedJson( "{\"i\":1,\"s\":\"sss\"}" );
+        assertGet( httpUrl( "/x/v/math/asyncOptional" ) )
+            .hasCode( Http.StatusCode.NOT_FOUND );
+        assertGet( httpUrl( "/x/v/math/asyncVoid" ) )
+            .hasCode( Http.StatusCode.NO_CONTENT );
+        assertGet( httpUrl( "/x/v/math/asyncFailed" ) )
+            .hasCode( Http.StatusCode.BAD_REQUEST );
+    }
+
+    @Test
+    public void cached() {
+        var first = new AtomicReference<String>();
+        assertGet( httpUrl( "/x/v/math/cached?key=1" ) ).isOk()
+            .satisfies( response -> first.set( response.contentString() ) );
+        assertGet( httpUrl( "/x/v/math/cached?key=1" ) ).isOk()
+            .hasBody( first.get() );
+        assertGet( httpUrl( "/x/v/math/cached?key=2" ) ).isOk()
+            .satisfies( response -> assertThat( response.contentString() ).isNotEqualTo( first.get() ) );
+    }
+
+    @Test
+    public void cachedPerUserAndParameter() {
+        var first = new AtomicReference<String>();
+        assertGet( httpUrl( "/x/v/math/cached?key=user" ), Map.of(), Map.of( "Authorization", "a" ) ).isOk()
+            .satisfies( response -> first.set( response.contentString() ) );
+        assertGet( httpUrl( "/x/v/math/cached?key=user" ), Map.of(), Map.of( "Authorization", "a" ) ).isOk()
+            .hasBody( first.get() );
+        assertGet( httpUrl( "/x/v/math/cached?key=user" ), Map.of(), Map.of( "Authorization", "b" ) ).isOk()
+            .satisfies( response -> assertThat( response.contentString() ).isNotEqualTo( first.get() ) );
+
+        assertGet( httpUrl( "/x/v/math/cachedByTenant" ), Map.of(), Map.of( "Tenant", "a" ) ).isOk()
+            .satisfies( response -> first.set( response.contentString() ) );
+        assertGet( httpUrl( "/x/v/math/cachedByTenant" ), Map.of(), Map.of( "Tenant", "a" ) ).isOk()
+            .hasBody( first.get() );
+        assertGet( httpUrl( "/x/v/math/cachedByTenant" ), Map.of(), Map.of( "Tenant", "b" ) ).isOk()
+            .satisfies( response -> assertThat( response.contentString() ).isNotEqualTo( first.get() ) );
+
+        assertGet( httpUrl( "/x/v/math/cachedByRealm?realm=a&page=1" ) ).isOk()
+            .satisfies( response -> first.set( response.contentString() ) );
+        assertGet( httpUrl( "/x/v/math/cachedByRealm?realm=a&page=2" ) ).isOk()
+            .hasBody( first.get() );
+        assertGet( httpUrl( "/x/v/math/cachedByRealm?realm=b&page=1" ) ).isOk()
+            .satisfies( response -> assertThat( response.contentString() ).isNotEqualTo( first.get() ) );
+    }
+
+    @Test
+    public void conditionalGet() {
+        assertGet( httpUrl( "/x/v/math/versioned?version=v1" ) ).isOk()
+            .satisfies( response -> assertThat( response.headers ).contains( __( "ETag", "\"v1\"" ) ) );
+        assertGet( httpUrl( "/x/v/math/versioned?version=v1" ), Map.of(), Map.of( "If-None-Match", "\"v0\", \"v1\"" ) )
+            .hasCode( StatusCodes.NOT_MODIFIED );
+        assertGet( httpUrl( "/x/v/math/versioned?version=v2" ), Map.of(), Map.of( "If-None-Match", "\"v1\"" ) )
+            .isOk();
+
+        var etag = new AtomicReference<String>();
+        assertGet( httpUrl( "/x/v/math/cached?key=etag" ) ).isOk()
+            .satisfies( response -> etag.set( etag( response ) ) );
+        assertGet( httpUrl( "/x/v/math/cached?key=etag" ), Map.of(), Map.of( "If-None-Match", etag.get() ) )
+            .hasCode( StatusCodes.NOT_MODIFIED );
+
+        assertGet( httpUrl( "/x/v/limited/cached?key=noetag" ) ).isOk()
+            .satisfies( response -> assertThat( response.headers ).noneMatch( header -> header._1.equalsIgnoreCase( "ETag" ) ) );
+    }
+
+    @Test
+    public void coalesced() throws Exception {
+        var clients = Executors.newFixedThreadPool( 8 );
+        try {
+            var bodies = new ArrayList<Future<String>>();
+            for( int i = 0; i < 8; i++ )
+                bodies.add( clients.submit( () -> {
+                    var body = new AtomicReference<String>();
+                    assertGet( httpUrl( "/x/v/math/coalesced?key=1" ) ).isOk()
+                        .satisfies( response -> body.set( response.contentString() ) );
+                    return body.get();
+                } ) );
+
+            var distinct = new HashSet<String>();
+            for( var body : bodies ) distinct.add( body.get() );
+            assertThat( distinct.size() ).isLessThan( 8 );
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void negotiated() {
+        assertGet( httpUrl( "/x/v/math/bean?i=1&s=sss" ), Map.of(), Map.of( "Accept", "application/cbor" ) ).isOk()
+            .satisfies( response -> assertThat( response.headers ).contains( __( "Content-Type", "application/cbor" ) ) );
+        assertGet( httpUrl( "/x/v/math/bean?i=1&s=sss" ), Map.of(), Map.of( "Accept", "text/html, */*;q=0.1" ) )
+            .respondedJson( OK, "OK", "{\"i\":1,\"s\":\"sss\"}" );
+    }
+
+    @Test
+    public void compressionPolicy() {
+        var large = "x".repeat( 512 );
+        assertGet( httpUrl( "/x/v/compressed/id" ), Map.of( "a", large ), Map.of( "Accept-Encoding", "gzip" ) ).isOk()
+            .satisfies( response -> assertThat( etag( response ) ).endsWith( "-gzip\"" ) );
+        assertGet( httpUrl( "/x/v/compressed/id?a=x" ), Map.of(), Map.of( "Accept-Encoding", "gzip" ) ).isOk()
+            .satisfies( response -> assertThat( etag( response ) ).doesNotEndWith( "-gzip\"" ) );
+        assertGet( httpUrl( "/x/v/compressed/id" ), Map.of( "a", large ), Map.of( "Accept-Encoding", "identity" ) ).isOk()
+            .satisfies( response -> assertThat( response.headers ).noneMatch( header -> header._2.endsWith( "-gzip\"" ) ) );
+    }
+
+    @Test
+    public void compressionOfStreamIsNotBuffered() {
+        assertGet( httpUrl( "/x/v/compressed/stream?n=50" ), Map.of(), Map.of( "Accept-Encoding", "gzip" ) ).isOk()
+            .satisfies( response -> assertThat( response.headers )
+                .anyMatch( header -> header._1.equalsIgnoreCase( "Content-Encoding" ) && header._2.equals( "gzip" ) )
+                .noneMatch( header -> header._1.equalsIgnoreCase( "ETag" ) ) );
+    }
+
+    @Test
+    public void deadline() {
+        long start = System.currentTimeMillis();
+        assertGet( httpUrl( "/x/v/math/sleep?ms=10000" ) ).hasCode( StatusCodes.GATEWAY_TIMEOUT );
+        assertGet( httpUrl( "/x/v/math/asyncNever" ) ).hasCode( StatusCodes.GATEWAY_TIMEOUT );
+        assertGet( httpUrl( "/x/v/math/remaining" ), Map.of(), Map.of( Deadline.HEADER, "50" ) ).hasCode( StatusCodes.GATEWAY_TIMEOUT );
+        assertThat( System.currentTimeMillis() - start ).isLessThan( 5000 );
+
+        assertGet( httpUrl( "/x/v/math/sleep?ms=1" ) ).isOk();
+        assertGet( httpUrl( "/x/v/math/remaining" ) ).responded( OK, "OK", APPLICATION_JSON, "false" );
+    }
+
+    @Test
+    public void deadlineOfUninterruptible() {
+        long start = System.currentTimeMillis();
+        assertGet( httpUrl( "/x/v/math/spin?ms=3000" ) ).hasCode( StatusCodes.GATEWAY_TIMEOUT );
+        assertThat( System.currentTimeMillis() - start ).isLessThan( 2000 );
+    }
+
+    /**
+     * The first call is answered with 504 but keeps spinning and holds the only slot.
+     */
+    @Test
+    public void timedCallsAreBounded() {
+        assertGet( httpUrl( "/x/v/limited/spin?ms=2000" ) ).hasCode( StatusCodes.GATEWAY_TIMEOUT );
+        assertGet( httpUrl( "/x/v/limited/spin?ms=10" ) ).hasCode( StatusCodes.SERVICE_UNAVAILABLE );
+    }
+
+    @Test
+    public void metrics() throws InterruptedException {
+        var registry = new SimpleMeterRegistry();
+        Metrics.addRegistry( registry );
+        try {
+            assertGet( httpUrl( "/x/v/math/sumab?a=1&b=2" ) ).isOk();
+
+            assertThat( registry.get( "oap_ws_stage" ).tags( "method", "sumab", "stage", "invoke" ).timer().count() ).isEqualTo( 1 );
+            assertThat( registry.get( "oap_ws_stage" ).tags( "method", "sumab", "stage", "send" ).timer().count() ).isEqualTo( 1 );
+            // the exchange completes after the client got the response
+            var request = registry.get( "oap_ws_request" ).tags( "method", "sumab", "status", "200" ).timer();
+            for( int i = 0; i < 100 && request.count() == 0; i++ ) Thread.sleep( 10 );
+            assertThat( request.count() ).isEqualTo( 1 );
+            assertThat( request.takeSnapshot().histogramCounts() ).isEmpty();
+            assertThat( registry.get( "oap_ws_response_size" ).tags( "method", "sumab" ).summary().totalAmount() ).isGreaterThan( 0 );
+            assertThat( registry.find( "oap_ws_stage" ).tags( "method", "uncalled" ).timers() ).isEmpty();
+        } finally {
+            Metrics.removeRegistry( registry );
+        }
+    }
+
+    private static String etag( Client.Response response ) {
+        return response.headers.stream()
+            .filter( header -> header._1.equalsIgnoreCase( "ETag" ) )
+            .findAny().orElseThrow()._2;
+    }
+
+    @Test
+    public void stream() {
+        assertGet( httpUrl( "/x/v/math/stream?n=3" ) )
+            .respondedJson( "[{\"i\":0,\"s\":\"s0\"},{\"i\":1,\"s\":\"s1\"},{\"i\":2,\"s\":\"s2\"}]" );
+        assertGet( httpUrl( "/x/v/math/stream?n=0" ) )
+            .respondedJson( "[]" );
+        assertGet( httpUrl( "/x/v/math/iterator?n=2" ) )
+            .respondedJson( "[{\"i\":0,\"s\":\"s0\"},{\"i\":1,\"s\":\"s1\"}]" );
+    }
+
     @Test
     public void shouldVerifyGZIPRequestProcessing() throws Exception {
         final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -218,6 +421,7 @@ public class WebServicesTest extends Fixtures {
 
     @SuppressWarnings( "unused" )
     static class MathWS {
+        private final AtomicInteger invocations = new AtomicInteger();
 
         public int sum( int a, List<Integer> b, Optional<Integer> c, Optional<RetentionPolicy> rp ) {
             return a + b.stream().mapToInt( Integer::intValue ).sum()
@@ -240,6 +444,14 @@ public class WebServicesTest extends Fixtures {
             return id;
         }
 
+        public String forwardedFor( @WsParam( from = HEADER, name = "X-Forwarded-For" ) Optional<String> forwardedFor ) {
+            return forwardedFor.orElse( "" );
+        }
+
+        public int uncalled() {
+            return 0;
+        }
+
         @WsMethod( method = GET, path = "/test/sort/default" )
         public String test2() {
             return "__default__";
@@ -273,6 +485,83 @@ public class WebServicesTest extends Fixtures {
             return new Bean( i, s );
         }
 
+        public java.util.stream.Stream<Bean> stream( int n ) {
+            return IntStream.range( 0, n ).mapToObj( i -> new Bean( i, "s" + i ) );
+        }
+
+        public Iterator<Bean> iterator( int n ) {
+            return IntStream.range( 0, n ).mapToObj( i -> new Bean( i, "s" + i ) ).iterator();
+        }
+
+        public CompletableFuture<Bean> async( int i, String s ) {
+            return CompletableFuture.supplyAsync( () -> new Bean( i, s ) );
+        }
+
+        public CompletionStage<Optional<Bean>> asyncOptional() {
+            return CompletableFuture.supplyAsync( Optional::empty );
+        }
+
+        public CompletionStage<Void> asyncVoid() {
+            return CompletableFuture.runAsync( () -> {} );
+        }
+
+        public CompletionStage<Bean> asyncFailed() {
+            return CompletableFuture.supplyAsync( () -> {
+                throw new WsClientException( "failed" );
+            } );
+        }
+
+        public Response versioned( String version ) {
+            return Response.versioned( version, () -> new Bean( invocations.incrementAndGet(), version ) );
+        }
+
+        @WsCoalesce
+        @SneakyThrows
+        public int coalesced( String key ) {
+            Thread.sleep( 200 );
+            return invocations.incrementAndGet();
+        }
+
+        @WsMethod( timeout = 200 )
+        @SneakyThrows
+        public boolean sleep( long ms ) {
+            Thread.sleep( ms );
+            return true;
+        }
+
+        @WsMethod( timeout = 200 )
+        public boolean spin( long ms ) {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( ms );
+            while( System.nanoTime() < end ) Thread.onSpinWait();
+            return true;
+        }
+
+        @WsMethod( timeout = 200 )
+        public CompletionStage<Integer> asyncNever() {
+            return new CompletableFuture<>();
+        }
+
+        @SneakyThrows
+        public boolean remaining( Deadline deadline ) {
+            while( deadline.isSet() && !deadline.expired() ) Thread.sleep( 10 );
+            return deadline.isSet();
+        }
+
+        @WsCache
+        public int cached( String key ) {
+            return invocations.incrementAndGet();
+        }
+
+        @WsCache
+        public int cachedByTenant( @WsParam( from = HEADER ) String tenant ) {
+            return invocations.incrementAndGet();
+        }
+
+        @WsCache( keyBy = WsCache.KeyBy.REALM, realm = "realm" )
+        public int cachedByRealm( String realm ) {
+            return invocations.incrementAndGet();
+        }
+
         public Bean json( @WsParam( from = BODY ) Bean bean ) {
             return bean;
         }
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.application.testng.KernelFixture;
+import oap.json.Binder;
+import oap.testng.Fixtures;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static oap.http.Http.ContentType.APPLICATION_JSON;
+import static oap.http.Http.StatusCode.BAD_REQUEST;
+import static oap.http.Http.StatusCode.OK;
+import static oap.http.testng.HttpAsserts.assertPost;
+import static oap.http.testng.HttpAsserts.httpUrl;
+import static oap.io.Resources.urlOrThrow;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WsBatchHandlerTest extends Fixtures {
+    public WsBatchHandlerTest() {
+        fixture( new KernelFixture( urlOrThrow( getClass(), "/application.test.conf" ) ) );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void batch() {
+        var batch = """
+            [
+              { "path": "/x/v/math/sumab", "query": { "a": 1, "b": 2 } },
+              { "path": "/x/v/math/bean", "query": { "i": 1, "s": "sss" } },
+              { "method": "POST", "path": "/x/v/math/json", "body": { "i": 2, "s": "body" } },
+              { "method": "POST", "path": "/session/putDirectly", "query": { "value": "vvv" } },
+              { "path": "/session/get" },
+              { "path": "/x/v/math/x", "query": { "i": 1, "s": "2" } },
+              { "path": "/batch" },
+              { "path": "/batch/" },
+              { "path": "//batch" },
+              { "path": "/x/v/math/../../../batch" }
+            ]""";
+
+        assertPost( httpUrl( "/batch" ), batch, APPLICATION_JSON )
+            .hasCode( OK )
+            .satisfies( response -> {
+                List<Map<String, Object>> results = Binder.json.unmarshal( List.class, response.contentString() );
+                assertThat( results ).hasSize( 10 );
+                assertThat( results.get( 0 ) ).containsEntry( "code", 200 ).containsEntry( "body", 3 );
+                assertThat( results.get( 1 ) ).containsEntry( "code", 200 ).containsEntry( "body", Map.of( "i", 1, "s", "sss" ) );
+                assertThat( results.get( 2 ) ).containsEntry( "code", 200 ).containsEntry( "body", Map.of( "i", 2, "s", "body" ) );
+                assertThat( results.get( 3 ) ).containsEntry( "code", 204 );
+                assertThat( results.get( 4 ) ).containsEntry( "code", 200 ).containsEntry( "body", "vvv" );
+                assertThat( results.get( 5 ) ).containsEntry( "code", 500 );
+                assertThat( results.get( 6 ) ).containsEntry( "code", 400 );
+                assertThat( results.get( 7 ) ).containsEntry( "code", 400 );
+                assertThat( results.get( 8 ) ).containsEntry( "code", 400 );
+                assertThat( results.get( 9 ) ).containsEntry( "code", 400 );
+            } );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void forwardsClientAddress() {
+        assertPost( httpUrl( "/batch" ), "[ { \"path\": \"/x/v/math/forwardedFor\" } ]", APPLICATION_JSON,
+            Map.of( "X-Forwarded-For", "10.0.0.1" ) )
+            .hasCode( OK )
+            .satisfies( response -> {
+                List<Map<String, Object>> results = Binder.json.unmarshal( List.class, response.contentString() );
+                assertThat( results.get( 0 ) ).containsEntry( "code", 200 ).containsEntry( "body", "10.0.0.1" );
+            } );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void forwardedHeadersAreTakenFromTheBatch() {
+        var batch = """
+            [
+              { "path": "/x/v/math/forwardedFor", "headers": { "X-Forwarded-For": "10.0.0.2" } },
+              { "path": "/session/get", "headers": { "Cookie": "SID=other" } },
+              { "path": "/x/v/math/sumab", "query": { "a": 1, "b": 2 }, "headers": { "Authorization": "a" } }
+            ]""";
+        assertPost( httpUrl( "/batch" ), batch, APPLICATION_JSON )
+            .hasCode( OK )
+            .satisfies( response -> {
+                List<Map<String, Object>> results = Binder.json.unmarshal( List.class, response.contentString() );
+                assertThat( results ).extracting( r -> r.get( "code" ) ).containsExactly( 400, 400, 400 );
+            } );
+    }
+
+    @Test
+    public void malformed() {
+        assertPost( httpUrl( "/batch" ), "{ \"path\": ", APPLICATION_JSON ).hasCode( BAD_REQUEST );
+        assertPost( httpUrl( "/batch" ), "", APPLICATION_JSON ).hasCode( BAD_REQUEST );
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.http.Http;
+import oap.reflect.Reflect;
+import oap.util.Result;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static oap.http.server.nio.HttpServerExchange.HttpMethod.GET;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WsMethodPlanTest {
+    private final TestWS instance = new TestWS();
+
+    private WsMethodPlan plan( String name ) {
+        return new WsMethodPlan( Reflect.reflect( TestWS.class ).method( name ).orElseThrow(), instance, new WsConfig() );
+    }
+
+    @Test
+    public void annotations() {
+        var plan = plan( "text" );
+        assertThat( plan.produces ).isEqualTo( Http.ContentType.TEXT_PLAIN );
+        assertThat( plan.raw ).isTrue();
+        assertThat( plan.annotation( WsMethod.class ) ).isPresent();
+        assertThat( plan.annotation( Deprecated.class ) ).isEmpty();
+        assertThat( plan( "plain" ).produces ).isEqualTo( Http.ContentType.APPLICATION_JSON );
+    }
+
+    @Test
+    public void response() {
+        assertThat( plan( "nothing" ).response( null ).code ).isEqualTo( Http.StatusCode.NO_CONTENT );
+        assertThat( plan( "optional" ).response( Optional.empty() ).code ).isEqualTo( Http.StatusCode.NOT_FOUND );
+        assertThat( plan( "optional" ).response( Optional.of( "a" ) ).body ).isEqualTo( "a" );
+        assertThat( plan( "result" ).response( Result.failure( "f" ) ).code ).isEqualTo( Http.StatusCode.INTERNAL_SERVER_ERROR );
+        assertThat( plan( "plain" ).response( "a" ).body ).isEqualTo( "a" );
+        assertThat( plan( "text" ).response( "a" ).contentType ).isEqualTo( Http.ContentType.TEXT_PLAIN );
+    }
+
+    @SuppressWarnings( "unused" )
+    public static class TestWS {
+        @WsMethod( method = GET, path = "/text", produces = Http.ContentType.TEXT_PLAIN, raw = true )
+        public String text() {
+            return "text";
+        }
+
+        public String plain() {
+            return "plain";
+        }
+
+        public void nothing() {}
+
+        public Optional<String> optional() {
+            return Optional.empty();
+        }
+
+        public Result<String, String> result() {
+            return Result.success( "s" );
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.testng.annotations.Test;
+
+import static oap.http.Http.ContentType.TEXT_PLAIN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WsResponseCacheTest {
+    private static BufferedResponse response( String body ) {
+        return BufferedResponse.of( Response.ok().withBody( body, true ).withContentType( TEXT_PLAIN ) );
+    }
+
+    @Test
+    public void hitAndMiss() {
+        var cache = new WsResponseCache( 1024 * 1024 );
+        long hits = cache.hits();
+        long misses = cache.misses();
+
+        assertThat( cache.get( "region", "/a" ) ).isEmpty();
+        cache.put( "region", "/a", response( "a" ), 60_000 );
+        assertThat( cache.get( "region", "/a" ) ).hasValueSatisfying( r -> assertThat( r.body ).isEqualTo( "a".getBytes() ) );
+        assertThat( cache.get( "other", "/a" ) ).isEmpty();
+
+        assertThat( cache.hits() - hits ).isEqualTo( 1 );
+        assertThat( cache.misses() - misses ).isEqualTo( 2 );
+    }
+
+    @Test
+    public void metricsByCacheAndRegion() {
+        var registry = new SimpleMeterRegistry();
+        Metrics.addRegistry( registry );
+        try {
+            var cache = new WsResponseCache( "metrics-a", 1024 * 1024 );
+            var other = new WsResponseCache( "metrics-b", 1024 * 1024 );
+            cache.put( "region", "/a", response( "a" ), 60_000 );
+            cache.get( "region", "/a" );
+            cache.get( "other", "/a" );
+            other.get( "region", "/a" );
+
+            assertThat( count( registry, "metrics-a", "region", "hit" ) ).isEqualTo( 1 );
+            assertThat( count( registry, "metrics-a", "other", "miss" ) ).isEqualTo( 1 );
+            assertThat( count( registry, "metrics-b", "region", "miss" ) ).isEqualTo( 1 );
+            assertThat( count( registry, "metrics-b", "region", "hit" ) ).isZero();
+        } finally {
+            Metrics.removeRegistry( registry );
+        }
+    }
+
+    private static double count( SimpleMeterRegistry registry, String cache, String region, String result ) {
+        var counter = registry.find( "oap_ws_response_cache" ).tags( "cache", cache, "region", region, "result", result ).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    @Test
+    public void ttl() {
+        var cache = new WsResponseCache( 1024 * 1024 );
+        cache.put( "region", "/a", response( "a" ), -1 );
+
+        assertThat( cache.get( "region", "/a" ) ).isEmpty();
+    }
+
+    @Test
+    public void invalidate() {
+        var cache = new WsResponseCache( 1024 * 1024 );
+        cache.put( "region", "/a", response( "a" ), 60_000 );
+        cache.put( "region", "/b", response( "b" ), 60_000 );
+        cache.put( "other", "/a", response( "a" ), 60_000 );
+
+        cache.invalidate( "region", key -> key.equals( "/a" ) );
+        assertThat( cache.get( "region", "/a" ) ).isEmpty();
+        assertThat( cache.get( "region", "/b" ) ).isPresent();
+
+        cache.invalidate( "region" );
+        assertThat( cache.get( "region", "/b" ) ).isEmpty();
+        assertThat( cache.get( "other", "/a" ) ).isPresent();
+    }
+
+    @Test
+    public void evictsBySize() {
+        var cache = new WsResponseCache( 4 * 1024 );
+        for( int i = 0; i < 16; i++ ) cache.put( "region", "/" + i, response( "x".repeat( 1024 ) ), 60_000 );
+
+        assertThat( cache.get( "region", "/0" ) ).isEmpty();
+        assertThat( cache.get( "region", "/15" ) ).isPresent();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import org.testng.annotations.Test;
+
+import static oap.benchmark.Benchmark.benchmark;
+import static oap.http.server.nio.HttpServerExchange.HttpMethod.GET;
+import static oap.http.server.nio.HttpServerExchange.HttpMethod.POST;
+import static oap.ws.WsParam.From.PATH;
+
+/**
+ * Compares {@link WsRouter} with the linear scan of {@link WsMethodMatcher} on a service shaped like OrganizationWS.
+ */
+public class WsRouterPerformance {
+    private static final int SAMPLES = 1_000_000;
+    private static final int EXPERIMENTS = 5;
+
+    @Test
+    public void findMethod() {
+        var matcher = new WsMethodMatcher( OrganizationLikeWS.class );
+        var router = new WsRouter( OrganizationLikeWS.class );
+
+        benchmark( "matcher-literal", SAMPLES, () -> matcher.findMethod( "/register", POST ) )
+            .experiments( EXPERIMENTS )
+            .run();
+        benchmark( "router-literal", SAMPLES, () -> router.find( "/register", POST ) )
+            .experiments( EXPERIMENTS )
+            .run();
+
+        benchmark( "matcher-parameters", SAMPLES, () -> matcher.findMethod( "/org1/users/user@example.com/accounts/add", POST ) )
+            .experiments( EXPERIMENTS )
+            .run();
+        benchmark( "router-parameters", SAMPLES, () -> router.find( "/org1/users/user@example.com/accounts/add", POST ) )
+            .experiments( EXPERIMENTS )
+            .run();
+
+        benchmark( "matcher-not-found", SAMPLES, () -> matcher.findMethod( "/org1/unknown/path", GET ) )
+            .experiments( EXPERIMENTS )
+            .run();
+        benchmark( "router-not-found", SAMPLES, () -> router.find( "/org1/unknown/path", GET ) )
+            .experiments( EXPERIMENTS )
+            .run();
+    }
+
+    @SuppressWarnings( "unused" )
+    public static class OrganizationLikeWS {
+        @WsMethod( method = POST, path = "/{organizationId}" )
+        public void store( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = POST, path = "/" )
+        public void store() {}
+
+        @WsMethod( method = GET, path = "/{organizationId}" )
+        public void get( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = GET, path = "/" )
+        public void list() {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/accounts" )
+        public void accounts( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = POST, path = "/{organizationId}/accounts" )
+        public void storeAccount( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/accounts/{accountId}" )
+        public void account( @WsParam( from = PATH ) String organizationId, @WsParam( from = PATH ) String accountId ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/users" )
+        public void users( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = POST, path = "/{organizationId}/users" )
+        public void storeUser( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/users/passwd" )
+        public void passwd( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/users/ban/{email}" )
+        public void ban( @WsParam( from = PATH ) String organizationId, @WsParam( from = PATH ) String email ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/users/unban/{email}" )
+        public void unban( @WsParam( from = PATH ) String organizationId, @WsParam( from = PATH ) String email ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/users/delete/{email}" )
+        public void delete( @WsParam( from = PATH ) String organizationId, @WsParam( from = PATH ) String email ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/users/apikey/{email}" )
+        public void apikey( @WsParam( from = PATH ) String organizationId, @WsParam( from = PATH ) String email ) {}
+
+        @WsMethod( method = POST, path = "/{organizationId}/users/{email}/accounts/add" )
+        public void addAccount( @WsParam( from = PATH ) String organizationId, @WsParam( from = PATH ) String email ) {}
+
+        @WsMethod( method = GET, path = "/{organizationId}/users/{email}/default-account/{accountId}" )
+        public void defaultAccount( @WsParam( from = PATH ) String organizationId, @WsParam( from = PATH ) String email,
+                                    @WsParam( from = PATH ) String accountId ) {}
+
+        @WsMethod( method = POST, path = "/{organizationId}/assign" )
+        public void assign( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = POST, path = "/{organizationId}/add" )
+        public void add( @WsParam( from = PATH ) String organizationId ) {}
+
+        @WsMethod( method = POST, path = "/register" )
+        public void register() {}
+
+        @WsMethod( method = GET, path = "/users/{email}" )
+        public void user( @WsParam( from = PATH ) String email ) {}
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.reflect.Reflect;
+import oap.reflect.Reflection;
+import org.testng.annotations.Test;
+
+import static oap.http.server.nio.HttpServerExchange.HttpMethod.DELETE;
+import static oap.http.server.nio.HttpServerExchange.HttpMethod.GET;
+import static oap.http.server.nio.HttpServerExchange.HttpMethod.POST;
+import static oap.ws.WsParam.From.PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WsRouterTest {
+    @Test
+    public void match() {
+        Reflection reflect = Reflect.reflect( WsMethodMatcherTest.WS.class );
+        var router = new WsRouter( WsMethodMatcherTest.WS.class );
+        assertThat( router.findMethod( "/", GET ) ).isEqualTo( reflect.method( "root" ) );
+        assertThat( router.findMethod( "", GET ) ).isEqualTo( reflect.method( "root" ) );
+        assertThat( router.findMethod( "/const", GET ) ).isEqualTo( reflect.method( "c" ) );
+        assertThat( router.findMethod( "/const/const", GET ) ).isEqualTo( reflect.method( "cc" ) );
+        assertThat( router.findMethod( "/const2/const", GET ) ).isEqualTo( reflect.method( "c2c" ) );
+        assertThat( router.findMethod( "/const/aaa/const", GET ) ).isEqualTo( reflect.method( "cvc" ) );
+        assertThat( router.findMethod( "/const/aaa", GET ) ).isEmpty();
+        assertThat( router.findMethod( "/const/", GET ) ).isEmpty();
+    }
+
+    @Test
+    public void matchOWS() {
+        Reflection reflect = Reflect.reflect( WsMethodMatcherTest.OWS.class );
+        var router = new WsRouter( WsMethodMatcherTest.OWS.class );
+        assertThat( router.findMethod( "/", GET ) ).isEqualTo( reflect.method( "list" ) );
+        assertThat( router.findMethod( "/asdAasdsd", POST ) ).isEqualTo( reflect.method( "store" ) );
+        assertThat( router.findMethod( "/asdAasdsd", GET ) ).isEqualTo( reflect.method( "get" ) );
+        assertThat( router.findMethod( "/register", POST ) ).isEqualTo( reflect.method( "register" ) );
+        assertThat( router.findMethod( "/raaegister", POST ) ).isEqualTo( reflect.method( "store" ) );
+        assertThat( router.findMethod( "/asdAasdsd/add-account", POST ) ).isEqualTo( reflect.method( "addAccount" ) );
+        assertThat( router.findMethod( "/asdAasdsd/accounts", GET ) ).isEqualTo( reflect.method( "accounts" ) );
+        assertThat( router.findMethod( "/asdAasdsd/accounts/asdaa", GET ) ).isEqualTo( reflect.method( "account" ) );
+        assertThat( router.findMethod( "/asdAasdsd", DELETE ) ).isEmpty();
+    }
+
+    @Test
+    public void backtracking() {
+        Reflection reflect = Reflect.reflect( RWS.class );
+        var router = new WsRouter( RWS.class );
+        assertThat( router.findMethod( "/users/current", GET ) ).isEqualTo( reflect.method( "current" ) );
+        assertThat( router.findMethod( "/users/current/accounts", GET ) ).isEqualTo( reflect.method( "accounts" ) );
+        assertThat( router.findMethod( "/users/john/accounts", GET ) ).isEqualTo( reflect.method( "accounts" ) );
+        assertThat( router.findMethod( "/y/2009/April", GET ) ).isEqualTo( reflect.method( "year" ) );
+        assertThat( router.findMethod( "/y/209/April", GET ) ).isEmpty();
+        assertThat( router.findMethod( "/sort=3/test", GET ) ).isEqualTo( reflect.method( "sort" ) );
+        assertThat( router.findMethod( "/sort=/test", GET ) ).isEmpty();
+        assertThat( router.findMethod( "/plain", POST ) ).isEqualTo( reflect.method( "plain" ) );
+        assertThat( router.findMethod( "/plain", DELETE ) ).isEqualTo( reflect.method( "plain" ) );
+    }
+
+    @Test
+    public void pathParameters() {
+        var router = new WsRouter( RWS.class );
+
+        var year = router.match( "/y/2009/April", GET );
+        assertThat( year.pathParameter( "year" ) ).contains( "2009" );
+        assertThat( year.pathParameter( "month" ) ).contains( "April" );
+        assertThat( year.pathParameter( "day" ) ).isEmpty();
+
+        var sort = router.match( "/sort=3/test", GET );
+        assertThat( sort.pathParameter( "id" ) ).contains( "3" );
+
+        var accounts = router.match( "/users/john@example.com/accounts", GET );
+        assertThat( accounts.pathParameter( accounts.route.indexOf( "email" ) ) ).isEqualTo( "john@example.com" );
+
+        assertThat( WsRouter.pathParameterNames( "/{organizationId}/users/{email}/accounts/add" ) )
+            .containsExactly( "organizationId", "email" );
+        assertThat( WsRouter.pathParameterNames( "/y/{year:(\\d{4})}/{month}/x={date}" ) )
+            .containsExactly( "year", "month", "date" );
+    }
+
+    @SuppressWarnings( "unused" )
+    public static class RWS {
+        @WsMethod( path = "/users/current", method = GET )
+        public void current() {}
+
+        @WsMethod( path = "/users/{email}/accounts", method = GET )
+        public void accounts( @WsParam( from = PATH ) String email ) {}
+
+        @WsMethod( path = "/y/{year:(\\d{4})}/{month}", method = GET )
+        public void year( @WsParam( from = PATH ) String year, @WsParam( from = PATH ) String month ) {}
+
+        @WsMethod( path = "/sort={id}/test", method = GET )
+        public void sort( @WsParam( from = PATH ) String id ) {}
+
+        public void plain() {}
+    }
+}
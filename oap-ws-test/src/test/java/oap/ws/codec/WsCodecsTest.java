@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.codec;
+
+import oap.reflect.Reflect;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WsCodecsTest {
+    @Test
+    public void negotiate() {
+        assertThat( WsCodecs.negotiate( null ) ).isSameAs( WsCodecs.JSON );
+        assertThat( WsCodecs.negotiate( "*/*" ) ).isSameAs( WsCodecs.JSON );
+        assertThat( WsCodecs.negotiate( "text/html" ) ).isSameAs( WsCodecs.JSON );
+        assertThat( WsCodecs.negotiate( "application/cbor" ) ).isSameAs( WsCodecs.CBOR );
+        assertThat( WsCodecs.negotiate( "application/json;q=0.5, application/x-msgpack" ) ).isSameAs( WsCodecs.MESSAGE_PACK );
+        assertThat( WsCodecs.negotiate( "application/x-jackson-smile;q=0.9, application/json" ) ).isSameAs( WsCodecs.JSON );
+        assertThat( WsCodecs.negotiate( "application/cbor;q=0, */*;q=0.1" ) ).isSameAs( WsCodecs.JSON );
+    }
+
+    @Test
+    public void forContentType() {
+        assertThat( WsCodecs.forContentType( "application/json; charset=UTF-8" ) ).containsSame( WsCodecs.JSON );
+        assertThat( WsCodecs.forContentType( "application/x-jackson-smile" ) ).containsSame( WsCodecs.SMILE );
+        assertThat( WsCodecs.forContentType( "text/plain" ) ).isEmpty();
+        assertThat( WsCodecs.forContentType( null ) ).isEmpty();
+    }
+
+    @DataProvider
+    public Object[][] codecs() {
+        return new Object[][] { { WsCodecs.JSON }, { WsCodecs.SMILE }, { WsCodecs.CBOR }, { WsCodecs.MESSAGE_PACK } };
+    }
+
+    @Test( dataProvider = "codecs" )
+    public void roundTrip( WsCodec codec ) throws IOException {
+        var bean = new Bean( 1, "s", List.of( "a", "b" ) );
+        var out = new ByteArrayOutputStream();
+        codec.encode( bean, out );
+
+        Bean decoded = codec.decode( Reflect.reflect( Bean.class ), new ByteArrayInputStream( out.toByteArray() ) );
+        assertThat( decoded ).isEqualTo( bean );
+
+        Map<String, Object> map = codec.decode( Reflect.reflect( Map.class ), new ByteArrayInputStream( out.toByteArray() ) );
+        assertThat( map ).containsEntry( "s", "s" );
+    }
+
+    public static class Bean {
+        public int i;
+        public String s;
+        public List<String> list;
+
+        public Bean() {
+        }
+
+        public Bean( int i, String s, List<String> list ) {
+            this.i = i;
+            this.s = s;
+            this.list = list;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            return o instanceof Bean bean && i == bean.i && s.equals( bean.s ) && list.equals( bean.list );
+        }
+
+        @Override
+        public int hashCode() {
+            return i;
+        }
+    }
+}
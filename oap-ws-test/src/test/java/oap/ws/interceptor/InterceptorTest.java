@@ -28,14 +28,21 @@ import oap.application.testng.KernelFixture;
 import oap.testng.Fixtures;
 import oap.ws.InvocationContext;
 import oap.ws.Response;
+import oap.ws.WsMethod;
+import oap.ws.WsParam;
 import org.testng.annotations.Test;
 
+import java.util.Map;
 import java.util.Optional;
 
+import static oap.http.Http.ContentType.APPLICATION_JSON;
 import static oap.http.Http.StatusCode.FORBIDDEN;
+import static oap.http.server.nio.HttpServerExchange.HttpMethod.POST;
 import static oap.http.testng.HttpAsserts.assertGet;
+import static oap.http.testng.HttpAsserts.assertPost;
 import static oap.http.testng.HttpAsserts.httpUrl;
 import static oap.io.Resources.urlOrThrow;
+import static oap.ws.WsParam.From.BODY;
 
 public class InterceptorTest extends Fixtures {
     public InterceptorTest() {
@@ -49,11 +56,23 @@ public class InterceptorTest extends Fixtures {
             .hasReason( "caused by interceptor" );
     }
 
+    @Test
+    public void interceptorDoesNotParseBody() {
+        assertPost( httpUrl( "/interceptor/store?value=error" ), "not a json", APPLICATION_JSON )
+            .hasCode( FORBIDDEN )
+            .hasReason( "caused by interceptor" );
+    }
+
     @SuppressWarnings( "unused" )
     private static class TestWS {
         public String text( String value ) {
             return "ok";
         }
+
+        @WsMethod( method = POST )
+        public String store( String value, @WsParam( from = BODY ) Map<String, Object> body ) {
+            return "ok";
+        }
     }
 
     private static class PassInterceptor implements Interceptor {
@@ -66,7 +85,7 @@ public class InterceptorTest extends Fixtures {
     private static class ErrorInterceptor implements Interceptor {
         @Override
         public Optional<Response> before( InvocationContext context ) {
-            return "error".equals( context.exchange.getStringParameter( "value" ) )
+            return context.<String>getParameter( "value" ).filter( "error"::equals ).isPresent()
                 ? Optional.of( new Response( FORBIDDEN, "caused by interceptor" ) )
                 : Optional.empty();
         }
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.limit;
+
+import oap.ws.WsPriority;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LimiterTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    @Test
+    public void priorities() {
+        var config = new ConcurrencyLimit();
+        config.algorithm = ConcurrencyLimit.Algorithm.FIXED;
+        config.limit = 10;
+        var limiter = config.limiter( "priorities" );
+
+        var tokens = new ArrayList<Limiter.Token>();
+        for( int i = 0; i < 5; i++ ) tokens.add( limiter.tryAcquire( WsPriority.Level.SHEDDABLE ) );
+        assertThat( tokens ).doesNotContainNull();
+        assertThat( limiter.tryAcquire( WsPriority.Level.SHEDDABLE ) ).isNull();
+
+        for( int i = 0; i < 4; i++ ) tokens.add( limiter.tryAcquire( WsPriority.Level.NORMAL ) );
+        assertThat( tokens ).doesNotContainNull();
+        assertThat( limiter.tryAcquire( WsPriority.Level.NORMAL ) ).isNull();
+
+        var critical = limiter.tryAcquire( WsPriority.Level.CRITICAL );
+        assertThat( critical ).isNotNull();
+        assertThat( limiter.tryAcquire( WsPriority.Level.CRITICAL ) ).isNull();
+        assertThat( limiter.inflight() ).isEqualTo( 10 );
+
+        critical.release( false );
+        tokens.forEach( token -> token.release( false ) );
+        assertThat( limiter.inflight() ).isZero();
+    }
+
+    @Test
+    public void aimd() {
+        var limit = new AimdLimit( 10, 1, 20, 0.5, 100 * MS );
+
+        limit.onSample( 10 * MS, 5, false );
+        assertThat( limit.limit() ).isEqualTo( 11 );
+        limit.onSample( 10 * MS, 1, false );
+        assertThat( limit.limit() ).isEqualTo( 11 );
+        limit.onSample( 10 * MS, 6, true );
+        assertThat( limit.limit() ).isEqualTo( 5 );
+        limit.onSample( 200 * MS, 3, false );
+        assertThat( limit.limit() ).isEqualTo( 2 );
+        for( int i = 0; i < 100; i++ ) limit.onSample( 10 * MS, limit.limit(), false );
+        assertThat( limit.limit() ).isEqualTo( 20 );
+    }
+
+    @Test
+    public void gradient() {
+        var limit = new GradientLimit( 20, 1, 200, 1.5 );
+
+        for( int i = 0; i < 100; i++ ) limit.onSample( 10 * MS, limit.limit(), false );
+        var grown = limit.limit();
+        assertThat( grown ).isGreaterThan( 20 );
+
+        for( int i = 0; i < 20; i++ ) limit.onSample( 100 * MS, limit.limit(), false );
+        assertThat( limit.limit() ).isLessThan( grown );
+
+        var shrunk = limit.limit();
+        limit.onSample( 10 * MS, shrunk, true );
+        assertThat( limit.limit() ).isLessThan( shrunk );
+    }
+}
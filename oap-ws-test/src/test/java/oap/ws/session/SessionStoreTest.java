@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import lombok.SneakyThrows;
+import oap.testng.Env;
+import oap.testng.Fixtures;
+import oap.testng.TestDirectoryFixture;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionStoreTest extends Fixtures {
+    public SessionStoreTest() {
+        fixture( TestDirectoryFixture.FIXTURE );
+    }
+
+    @Test
+    public void onHeapMaxSize() {
+        var store = new OnHeapSessionStore( 60000, 2 );
+        store.getOrCreate( "a" ).set( "k", "a" );
+        store.getOrCreate( "b" );
+        store.getOrCreate( "c" );
+
+        assertThat( store.size() ).isEqualTo( 2 );
+        assertThat( store.get( "a" ) ).isEmpty();
+        assertThat( store.get( "c" ) ).isPresent();
+    }
+
+    @Test
+    public void serializer() throws Exception {
+        var values = Map.<String, Object>of( "s", "ß", "i", 1, "l", 2L, "b", true, "d", 0.5,
+            "list", List.of( "a" ), "url", new URL( "http://localhost" ) );
+        var restored = SessionSerializer.deserialize( SessionSerializer.serialize( values ) );
+
+        assertThat( restored ).containsEntry( "s", "ß" ).containsEntry( "i", 1 ).containsEntry( "l", 2L )
+            .containsEntry( "b", true ).containsEntry( "d", 0.5 ).containsEntry( "list", List.of( "a" ) )
+            // outside of the packages the filter admits
+            .doesNotContainKey( "url" );
+    }
+
+    @Test
+    public void offHeap() {
+        var store = new OffHeapSessionStore( 60000, 1024 * 1024 );
+        var session = store.getOrCreate( "s" );
+        session.set( "user", "alice" );
+        session.set( "roles", List.of( "admin" ) );
+        assertThat( store.get( "s" ).orElseThrow().attributes() ).isEmpty();
+        store.release( session );
+
+        var concurrent = store.get( "s" ).orElseThrow();
+        var other = store.get( "s" ).orElseThrow();
+        concurrent.set( "org", "oap" );
+        other.remove( "roles" );
+        store.release( concurrent );
+        store.release( other );
+
+        assertThat( store.get( "s" ).orElseThrow().attributes() )
+            .containsEntry( "user", "alice" )
+            .containsEntry( "org", "oap" )
+            .doesNotContainKey( "roles" );
+        assertThat( store.bytes() ).isPositive();
+
+        var bytes = store.bytes();
+        var rewritten = store.get( "s" ).orElseThrow();
+        rewritten.set( "org", "oap-ws" );
+        store.release( rewritten );
+        assertThat( store.bytes() ).isEqualTo( bytes );
+
+        var invalidated = store.get( "s" ).orElseThrow();
+        invalidated.invalidate();
+        store.release( invalidated );
+        assertThat( store.get( "s" ).orElseThrow().attributes() ).isEmpty();
+        assertThat( store.bytes() ).isZero();
+
+        store.remove( "s" );
+        assertThat( store.get( "s" ) ).isEmpty();
+    }
+
+    @Test
+    public void offHeapMaxBytes() {
+        var store = new OffHeapSessionStore( 60000, 4096 );
+        for( int i = 0; i < 100; i++ ) {
+            var session = store.getOrCreate( "s" + i );
+            session.set( "value", "x".repeat( 100 ) );
+            store.release( session );
+        }
+
+        assertThat( store.size() ).isLessThan( 100 );
+        assertThat( store.bytes() ).isLessThanOrEqualTo( 4096 );
+        // pages of the evicted sessions are reused
+        assertThat( store.arenaBytes() ).isEqualTo( 1024 * 1024 );
+    }
+
+    @Test
+    public void replicated() {
+        var a = new ReplicatedSessionStore( new LoopbackSessionTransport( "replicated" ), 60000, -1, 60000 );
+        var b = new ReplicatedSessionStore( new LoopbackSessionTransport( "replicated" ), 60000, -1, 60000 );
+        a.start();
+        b.start();
+        try {
+            a.getOrCreate( "s" ).set( "user", "alice" );
+            assertThat( b.get( "s" ).orElseThrow().<String>get( "user" ) ).contains( "alice" );
+
+            a.get( "s" ).orElseThrow().set( "user", "bob" );
+            assertThat( b.get( "s" ).orElseThrow().<String>get( "user" ) ).contains( "alice" );
+            a.flush();
+            assertThat( b.get( "s" ).orElseThrow().<String>get( "user" ) ).contains( "bob" );
+
+            var roles = new ArrayList<>( List.of( "admin" ) );
+            a.get( "s" ).orElseThrow().set( "roles", roles );
+            a.flush();
+            assertThat( b.get( "s" ).orElseThrow().<List<String>>get( "roles" ).orElseThrow() ).isEqualTo( roles ).isNotSameAs( roles );
+
+            b.get( "s" ).orElseThrow().set( "org", "oap" );
+            a.get( "s" ).orElseThrow().invalidate();
+            assertThat( b.get( "s" ).orElseThrow().attributes() ).isEmpty();
+            b.flush();
+            assertThat( a.get( "s" ).orElseThrow().attributes() ).isEmpty();
+
+            b.remove( "s" );
+            assertThat( a.get( "s" ) ).isEmpty();
+            assertThat( b.get( "unknown" ) ).isEmpty();
+        } finally {
+            a.close();
+            b.close();
+        }
+    }
+
+    @Test
+    public void replicatedFetchIsBounded() {
+        var fetches = new AtomicInteger();
+        var transport = new LoopbackSessionTransport( "slow" ) {
+            @Override
+            @SneakyThrows
+            public Optional<Map<String, Object>> fetch( String id ) {
+                fetches.incrementAndGet();
+                if( id.startsWith( "slow" ) ) Thread.sleep( 5000 );
+                return super.fetch( id );
+            }
+        };
+        var store = new ReplicatedSessionStore( transport, 60000, -1, 60000, 50, 60000 );
+        store.start();
+        try {
+            long start = System.currentTimeMillis();
+            assertThat( store.get( "slow" ) ).isEmpty();
+            assertThat( System.currentTimeMillis() - start ).isLessThan( 2000 );
+
+            assertThat( store.get( "bogus" ) ).isEmpty();
+            assertThat( store.get( "bogus" ) ).isEmpty();
+            assertThat( fetches.get() ).isEqualTo( 2 );
+
+            store.getOrCreate( "bogus" ).set( "user", "alice" );
+            assertThat( store.get( "bogus" ).orElseThrow().<String>get( "user" ) ).contains( "alice" );
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * The peer changes the session after b got its attributes, before b stores them.
+     */
+    @Test
+    public void replicatedChangesWhileFetching() {
+        var a = new ReplicatedSessionStore( new LoopbackSessionTransport( "fetching" ), 60000, -1, 60000 );
+        var b = new ReplicatedSessionStore( new LoopbackSessionTransport( "fetching" ) {
+            @Override
+            public Optional<Map<String, Object>> fetch( String id ) {
+                var values = super.fetch( id );
+                a.get( id ).orElseThrow().set( "user", "bob" );
+                a.flush();
+                return values;
+            }
+        }, 60000, -1, 60000, 5000, 60000 );
+        a.start();
+        b.start();
+        try {
+            a.getOrCreate( "s" ).set( "user", "alice" );
+            assertThat( b.get( "s" ).orElseThrow().<String>get( "user" ) ).contains( "bob" );
+        } finally {
+            a.close();
+            b.close();
+        }
+    }
+
+    @Test
+    public void file() {
+        var directory = Env.tmpPath( "sessions" );
+        var store = new FileSessionStore( directory, 60000, -1, 60000 );
+        store.getOrCreate( "s" ).set( "user", "alice" );
+        assertThat( directory.resolve( "s.session" ) ).doesNotExist();
+        store.flush();
+        assertThat( directory.resolve( "s.session" ) ).exists();
+        store.getOrCreate( "../escape" ).set( "user", "bob" );
+        store.getOrCreate( "removed" ).set( "user", "carol" );
+        store.remove( "removed" );
+        store.close();
+
+        var restored = new FileSessionStore( directory, 60000, -1 );
+        assertThat( restored.get( "s" ).orElseThrow().<String>get( "user" ) ).contains( "alice" );
+        assertThat( restored.get( "../escape" ).orElseThrow().<String>get( "user" ) ).contains( "bob" );
+        assertThat( restored.get( "removed" ) ).isEmpty();
+        assertThat( directory.getParent().resolve( "escape.session" ) ).doesNotExist();
+    }
+}
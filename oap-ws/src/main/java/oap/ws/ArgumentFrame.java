@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.reflect.Reflection;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Arguments of a single invocation, indexed like the parameters of the method.
+ * The values array is shared with the invocation and is passed to the method as is.
+ */
+public final class ArgumentFrame {
+    public final List<Reflection.Parameter> parameters;
+    public final Object[] values;
+
+    public ArgumentFrame( List<Reflection.Parameter> parameters, Object[] values ) {
+        assert parameters.size() == values.length;
+
+        this.parameters = parameters;
+        this.values = values;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Reflection.Parameter parameter( int index ) {
+        return parameters.get( index );
+    }
+
+    public Object get( int index ) {
+        return values[index];
+    }
+
+    /**
+     * @return -1 if there is no such parameter
+     */
+    public int indexOf( String name ) {
+        for( int i = 0; i < values.length; i++ )
+            if( parameters.get( i ).name().equals( name ) ) return i;
+        return -1;
+    }
+
+    public Object get( String name ) throws NoSuchElementException {
+        int index = indexOf( name );
+        if( index < 0 ) throw new NoSuchElementException( name );
+        return values[index];
+    }
+
+    /**
+     * @return a new map by parameter, in the order of the parameters
+     */
+    public Map<Reflection.Parameter, Object> toMap() {
+        var map = new LinkedHashMap<Reflection.Parameter, Object>( values.length * 2 );
+        for( int i = 0; i < values.length; i++ ) map.put( parameters.get( i ), values[i] );
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder( "{" );
+        for( int i = 0; i < values.length; i++ ) {
+            if( i > 0 ) sb.append( ", " );
+            sb.append( parameters.get( i ).name() ).append( '=' ).append( values[i] );
+        }
+        return sb.append( '}' ).toString();
+    }
+}
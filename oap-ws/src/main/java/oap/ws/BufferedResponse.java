@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import com.google.common.hash.Hashing;
+import oap.http.Cookie;
+import oap.http.Http;
+import oap.http.server.nio.HttpServerExchange;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.GZIPOutputStream;
+
+import static io.undertow.util.Headers.ETAG_STRING;
+import static oap.http.Http.Headers.CONTENT_TYPE;
+
+/**
+ * Response with the body already serialized, it can be sent any number of times.
+ */
+@Immutable
+public final class BufferedResponse {
+    public final int code;
+    public final String reasonPhrase;
+    public final String contentType;
+    public final Map<String, String> headers;
+    public final List<Cookie> cookies;
+    public final byte[] body;
+    /**
+     * gzipped body by compression level + 1, null until the first compression
+     */
+    private volatile AtomicReferenceArray<byte[]> gzipped;
+
+    private BufferedResponse( int code, String reasonPhrase, String contentType, Map<String, String> headers,
+                              List<Cookie> cookies, byte[] body ) {
+        this.code = code;
+        this.reasonPhrase = reasonPhrase;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.cookies = cookies;
+        this.body = body;
+    }
+
+    public static BufferedResponse of( Response response ) {
+        return of( response, false );
+    }
+
+    /**
+     * @param etag a 200 response with a body and without ETag gets a strong one, hashed from the body
+     */
+    public static BufferedResponse of( Response response, boolean etag ) {
+        var body = response.bodyBytes();
+        var headers = response.headers;
+        if( etag && response.code == Http.StatusCode.OK && body != null && response.etag() == null ) {
+            headers = new HashMap<>( headers );
+            headers.put( ETAG_STRING, '"' + Hashing.murmur3_128().hashBytes( body ).toString() + '"' );
+        }
+        return new BufferedResponse( response.code, response.reasonPhrase, response.contentType, Map.copyOf( headers ),
+            List.copyOf( response.cookies ), body );
+    }
+
+    /**
+     * @return approximate memory taken, in bytes
+     */
+    public int weight() {
+        int weight = 64 + ( body != null ? body.length : 0 );
+        for( var header : headers.entrySet() ) weight += 2 * ( header.getKey().length() + header.getValue().length() );
+        return weight;
+    }
+
+    /**
+     * @return new response with this body, for interceptors to amend
+     */
+    public Response response() {
+        var response = new Response( code, reasonPhrase, contentType, body, true );
+        response.buffered = this;
+        response.headers.putAll( headers );
+        response.cookies.addAll( cookies );
+        return response;
+    }
+
+    /**
+     * @param level {@link java.util.zip.Deflater} level, -1 to 9
+     * @return the body gzipped, compressed once per level and kept for later calls
+     */
+    public byte[] gzip( int level ) {
+        var levels = this.gzipped;
+        if( levels == null ) this.gzipped = levels = new AtomicReferenceArray<>( 11 );
+        var gzipped = levels.get( level + 1 );
+        if( gzipped == null ) {
+            var out = new ByteArrayOutputStream( body.length / 4 + 32 );
+            try( var gzip = new GZIPOutputStream( out ) {
+                {
+                    def.setLevel( level );
+                }
+            } ) {
+                gzip.write( body );
+            } catch( IOException e ) {
+                throw new UncheckedIOException( e );
+            }
+            gzipped = out.toByteArray();
+            levels.set( level + 1, gzipped );
+        }
+        return gzipped;
+    }
+
+    public void send( HttpServerExchange exchange ) {
+        exchange.setStatusCode( code );
+        if( reasonPhrase != null ) exchange.setReasonPhrase( reasonPhrase );
+        headers.forEach( exchange::setResponseHeader );
+        cookies.forEach( exchange::setResponseCookie );
+        if( contentType != null ) exchange.setResponseHeader( CONTENT_TYPE, contentType );
+        if( body != null ) exchange.send( body );
+        else exchange.endExchange();
+    }
+}
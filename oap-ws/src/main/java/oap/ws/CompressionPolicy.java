@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import oap.http.Http;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Which responses {@link WebService} gzips itself instead of leaving it to the http server:
+ * only bodies of at least minSize bytes, of one of the content types, for clients accepting gzip.
+ */
+@EqualsAndHashCode
+@ToString
+public class CompressionPolicy {
+    public boolean enabled = true;
+    public int minSize = 1024;
+    public int level = Deflater.DEFAULT_COMPRESSION;
+    public LinkedHashSet<String> contentTypes = new LinkedHashSet<>( List.of(
+        Http.ContentType.APPLICATION_JSON,
+        "application/javascript",
+        "application/xml",
+        "text/plain",
+        "text/html",
+        "text/css",
+        "text/csv",
+        "text/xml"
+    ) );
+
+    /**
+     * @return this policy with the values set by the annotation, null if compression is disabled
+     */
+    public CompressionPolicy with( WsCompression compression ) {
+        if( !enabled || compression != null && !compression.enabled() ) return null;
+        if( compression == null ) return this;
+
+        var policy = new CompressionPolicy();
+        policy.minSize = compression.minSize() >= 0 ? compression.minSize() : minSize;
+        policy.level = compression.level() >= 0 ? compression.level() : level;
+        policy.contentTypes = compression.contentTypes().length > 0
+            ? new LinkedHashSet<>( List.of( compression.contentTypes() ) )
+            : contentTypes;
+        return policy;
+    }
+
+    public boolean compressible( String contentType ) {
+        if( contentType == null ) return false;
+        int parameters = contentType.indexOf( ';' );
+        return contentTypes.contains( ( parameters < 0 ? contentType : contentType.substring( 0, parameters ) ).trim() );
+    }
+
+    /**
+     * @param acceptEncoding Accept-Encoding header, may be null
+     */
+    public static boolean acceptsGzip( String acceptEncoding ) {
+        if( acceptEncoding == null ) return false;
+        for( var coding : acceptEncoding.split( "," ) ) {
+            var parameters = coding.split( ";" );
+            var name = parameters[0].trim();
+            if( !name.equalsIgnoreCase( "gzip" ) && !name.equals( "*" ) ) continue;
+            for( int i = 1; i < parameters.length; i++ ) {
+                var parameter = parameters[i].trim();
+                if( parameter.startsWith( "q=" ) && parameter.substring( 2 ).matches( "0(\\.0*)?" ) ) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import com.google.common.util.concurrent.UncheckedTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The moment a request has to be answered by, see {@link WsMethod#timeout()}, {@link WsConfig#timeout} and
+ * {@link #HEADER}. A method gets it as a parameter of this type or via {@link InvocationContext#deadline},
+ * long running work should check it and give up once it is expired.
+ */
+public final class Deadline {
+    /**
+     * Time budget of the request in ms as seen by the client, the effective deadline is the earlier of it and the method one.
+     */
+    public static final String HEADER = "X-Request-Timeout";
+    public static final Deadline NONE = new Deadline( Long.MAX_VALUE );
+
+    private static final long MAX_MILLIS = TimeUnit.DAYS.toMillis( 365 );
+
+    private final long nanos;
+
+    private Deadline( long nanos ) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * @param millis negative for none
+     */
+    public static Deadline after( long millis ) {
+        if( millis < 0 ) return NONE;
+        return new Deadline( System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( Math.min( millis, MAX_MILLIS ) ) );
+    }
+
+    /**
+     * @param header {@link #HEADER} value, none if absent or malformed
+     */
+    public static Deadline parse( String header ) {
+        if( header == null ) return NONE;
+        try {
+            return after( Math.max( 0, Long.parseLong( header.trim() ) ) );
+        } catch( NumberFormatException e ) {
+            return NONE;
+        }
+    }
+
+    public Deadline min( Deadline other ) {
+        if( this == NONE ) return other;
+        if( other == NONE ) return this;
+        return nanos - other.nanos <= 0 ? this : other;
+    }
+
+    public boolean isSet() {
+        return this != NONE;
+    }
+
+    /**
+     * @return ms left, 0 once expired, {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long remaining() {
+        if( this == NONE ) return Long.MAX_VALUE;
+        return Math.max( 0, TimeUnit.NANOSECONDS.toMillis( nanos - System.nanoTime() ) );
+    }
+
+    public boolean expired() {
+        return this != NONE && nanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @throws UncheckedTimeoutException if expired, answered with 504
+     */
+    public void check() throws UncheckedTimeoutException {
+        if( expired() ) throw new UncheckedTimeoutException( "deadline exceeded" );
+    }
+
+    @Override
+    public String toString() {
+        return this == NONE ? "none" : remaining() + "ms";
+    }
+}
@@ -28,73 +28,139 @@ import lombok.extern.slf4j.Slf4j;
 import oap.http.server.nio.HttpServerExchange;
 import oap.json.Binder;
 import oap.reflect.Reflection;
-import oap.util.BiStream;
-import oap.util.Stream;
-import oap.util.function.Functions;
 
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Supplier;
-
-import static oap.util.Pair.__;
 
 @Slf4j
 public class InvocationContext {
+    private static final Object UNRESOLVED = new Object();
+
     public final HttpServerExchange exchange;
     public final Session session;
     public final Reflection.Method method;
-    private final Supplier<Map<Reflection.Parameter, Object>> unparsedParameters = Functions.memoize( this::retrieveParameters );
-    private final Supplier<Map<Reflection.Parameter, Object>> parsedParameters = Functions.memoize( this::parseParameters );
-    private final Supplier<Map<String, Object>> namedParameters = Functions.memoize( this::nameParameters );
-    private final Optional<WsMethod> methodAnnotation;
+    public final WsMethodPlan plan;
+    /**
+     * {@link Deadline#NONE} unless the method, the service or the client limits the time of the request
+     */
+    public final Deadline deadline;
+    private final WsRouter.Match match;
+    /**
+     * Parameters are resolved one by one when asked for, so that an interceptor looking at a path parameter
+     * does not read the body.
+     */
+    private final Object[] unparsed;
+    private final Object[] parsed;
+    private ArgumentFrame unparsedFrame;
+    private ArgumentFrame parsedFrame;
 
+    /**
+     * @deprecated a context without a route match re-parses path parameters from the request path and cannot be
+     * invoked, use {@link #InvocationContext(HttpServerExchange, Session, WsRouter.Match)}
+     */
+    @Deprecated
     public InvocationContext( HttpServerExchange exchange, Session session, Reflection.Method method ) {
+        this( exchange, session, null, WsMethodPlan.detached( method ), Deadline.NONE );
+    }
+
+    public InvocationContext( HttpServerExchange exchange, Session session, WsRouter.Match match ) {
+        this( exchange, session, match, Deadline.NONE );
+    }
+
+    public InvocationContext( HttpServerExchange exchange, Session session, WsRouter.Match match, Deadline deadline ) {
+        this( exchange, session, match, Objects.requireNonNull( match.plan, "match without a method plan" ), deadline );
+    }
+
+    private InvocationContext( HttpServerExchange exchange, Session session, WsRouter.Match match, WsMethodPlan plan, Deadline deadline ) {
         this.exchange = exchange;
         this.session = session;
-        this.method = method;
-        this.methodAnnotation = method.findAnnotation( WsMethod.class );
+        this.deadline = deadline;
+        this.match = match;
+        this.plan = plan;
+        this.method = plan.method;
+        this.unparsed = unresolved( plan.parameters.length );
+        this.parsed = unresolved( plan.parameters.length );
     }
 
-    public Map<Reflection.Parameter, Object> unparsedParameters() {
-        return unparsedParameters.get();
+    private static Object[] unresolved( int length ) {
+        var values = new Object[length];
+        Arrays.fill( values, UNRESOLVED );
+        return values;
     }
 
-    public Map<Reflection.Parameter, Object> parsedParameters() {
-        return parsedParameters.get();
+    public Object unparsedParameter( int index ) {
+        var value = unparsed[index];
+        if( value == UNRESOLVED ) unparsed[index] = value = plan.parameters[index].extractor.extract( this );
+        return value;
     }
 
-    private Map<Reflection.Parameter, Object> retrieveParameters() {
-        return Stream.of( method.parameters )
-            .mapToPairs( parameter -> __( parameter, getValue( parameter ) ) )
-            .toMap();
+    public Object parsedParameter( int index ) {
+        var value = parsed[index];
+        if( value == UNRESOLVED ) {
+            var unparsedValue = unparsedParameter( index );
+            try {
+                parsed[index] = value = map( plan.parameters[index].parameter.type(), unparsedValue );
+            } catch( Exception ex ) {
+                if( log.isDebugEnabled() )
+                    log.debug( "Cannot parse parameter {} from {}", plan.parameters[index].parameter.name(), unparsedValue,
+                        ex.getCause() != null ? ex.getCause() : ex );
+                throw ex;
+            }
+        }
+        return value;
     }
 
-    private Object getValue( Reflection.Parameter parameter ) {
-        return parameter.type().assignableFrom( HttpServerExchange.class )
-            ? new RoHttpServerExchange( exchange )
-            : parameter.type().assignableFrom( Session.class )
-                ? session
-                : parameter.findAnnotation( WsParam.class )
-                    .map( wsParam -> switch( wsParam.from() ) {
-                        case SESSION -> WsParams.fromSession( session, parameter );
-                        case HEADER -> WsParams.fromHeader( exchange, parameter, wsParam );
-                        case COOKIE -> WsParams.fromCookie( exchange, parameter, wsParam );
-                        case PATH -> WsParams.fromPath( exchange, methodAnnotation, parameter );
-                        case BODY -> WsParams.fromBody( exchange, parameter );
-                        case QUERY -> WsParams.fromQuery( exchange, parameter, wsParam );
-                    } ).orElseGet( () -> WsParams.fromQuery( exchange, parameter ) );
+    /**
+     * Resolves all parameters. The frame shares its values with this context.
+     */
+    public ArgumentFrame unparsedArguments() {
+        if( unparsedFrame == null ) {
+            for( int i = 0; i < unparsed.length; i++ ) unparsedParameter( i );
+            unparsedFrame = new ArgumentFrame( method.parameters, unparsed );
+        }
+        return unparsedFrame;
     }
 
-    private Map<Reflection.Parameter, Object> parseParameters() {
-        try {
-            return BiStream.of( unparsedParameters() )
-                .map( ( key, value ) -> __( key, map( key.type(), value ) ) )
-                .toMap();
-        } catch( Exception ex ) {
-            log.warn( "Cannot parse parameters from {}", unparsedParameters(), ex.getCause() != null ? ex.getCause() : ex );
-            throw ex;
+    /**
+     * Resolves and parses all parameters. The values of the frame are the arguments of the invocation.
+     */
+    public ArgumentFrame arguments() {
+        if( parsedFrame == null ) {
+            for( int i = 0; i < parsed.length; i++ ) parsedParameter( i );
+            parsedFrame = new ArgumentFrame( method.parameters, parsed );
         }
+        return parsedFrame;
+    }
+
+    /**
+     * @deprecated resolves all parameters into a new map, use {@link #unparsedArguments()} or
+     * {@link #unparsedParameter(int)}
+     */
+    @Deprecated
+    public Map<Reflection.Parameter, Object> unparsedParameters() {
+        return unparsedArguments().toMap();
+    }
+
+    /**
+     * @deprecated parses all parameters into a new map, use {@link #arguments()} or {@link #parsedParameter(int)}
+     */
+    @Deprecated
+    public Map<Reflection.Parameter, Object> parsedParameters() {
+        return arguments().toMap();
+    }
+
+    public <A extends Annotation> Optional<A> annotation( Class<A> type ) {
+        return plan.annotation( type );
+    }
+
+    Optional<String> pathParameter( int index ) {
+        if( match != null ) return Optional.ofNullable( match.pathParameter( index ) );
+        var mapping = plan.wsMethod.orElseThrow().path();
+        return WsMethodMatcher.pathParam( mapping, exchange.getRelativePath(), WsRouter.pathParameterNames( mapping ).get( index ) );
     }
 
     @SuppressWarnings( { "unchecked", "checkstyle:ParameterAssignment" } )
@@ -106,6 +172,7 @@ public class InvocationContext {
                     : Optional.ofNullable( map( reflection.typeParameters.get( 0 ), optValue.orElseThrow() ) );
             else {
                 if( value instanceof Optional optValue ) return map( reflection, optValue.orElseThrow() );
+                if( value instanceof RequestBody body ) return body.unmarshal( reflection );
                 if( reflection.isEnum() )
                     return Enum.valueOf( ( Class<Enum> ) reflection.underlying, ( String ) value );
 
@@ -118,19 +185,17 @@ public class InvocationContext {
                 return Binder.json.unmarshal( reflection, ( String ) value );
             }
         } catch( Exception e ) {
-            log.error( "Cannot map/deserialize {} into {}", value, reflection.underlying, e );
-            throw new WsClientException( "Cannot map/deserialize " + value + " into " + reflection.underlying, e );
+            if( log.isDebugEnabled() ) log.debug( "Cannot map/deserialize {} into {}", value, reflection.underlying, e );
+            throw WsClientException.stackless( "Cannot map/deserialize " + value + " into " + reflection.underlying, e );
         }
     }
 
-    private Map<String, Object> nameParameters() {
-        return BiStream.of( parsedParameters() )
-            .map( ( key, value ) -> __( key.name(), value ) )
-            .toMap();
-    }
-
+    /**
+     * Resolves and parses only the named parameter.
+     */
     @SuppressWarnings( "unchecked" )
     public <P> Optional<P> getParameter( String name ) {
-        return Optional.ofNullable( ( P ) namedParameters.get().get( name ) );
+        int index = plan.parameterIndex( name );
+        return index < 0 ? Optional.empty() : Optional.ofNullable( ( P ) parsedParameter( index ) );
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.ws.session.SessionStore;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A session that is not in the store: it reads as {@link Session#EMPTY} until the first change stores it.
+ * Removing from or invalidating it before that stores nothing.
+ * It keeps no attributes itself, a request without a session allocates no storage for one.
+ */
+final class LazySession extends Session {
+    private final SessionStore store;
+    private final Consumer<Session> onCreate;
+    private volatile Session session;
+
+    LazySession( String id, SessionStore store, Consumer<Session> onCreate ) {
+        super( id, NO_SLOTS, null );
+        this.store = store;
+        this.onCreate = onCreate;
+    }
+
+    boolean created() {
+        return session != null;
+    }
+
+    /**
+     * @return null if not created yet
+     */
+    Session stored() {
+        return session;
+    }
+
+    private Session read() {
+        var session = this.session;
+        return session != null ? session : EMPTY;
+    }
+
+    private Session write() {
+        var session = this.session;
+        if( session == null ) synchronized( this ) {
+            session = this.session;
+            if( session == null ) {
+                session = store.getOrCreate( id );
+                this.session = session;
+                onCreate.accept( session );
+            }
+        }
+        return session;
+    }
+
+    @Override
+    public <A> Optional<A> get( String key ) {
+        return read().get( key );
+    }
+
+    @Override
+    public <T> T get( SessionKey<T> key ) {
+        return read().get( key );
+    }
+
+    @Override
+    public boolean containsKey( String key ) {
+        return read().containsKey( key );
+    }
+
+    @Override
+    public boolean contains( SessionKey<?> key ) {
+        return read().contains( key );
+    }
+
+    @Override
+    public Map<String, Object> attributes() {
+        return read().attributes();
+    }
+
+    @Override
+    public void set( String key, Object value ) {
+        write().set( key, value );
+    }
+
+    @Override
+    public <T> void set( SessionKey<T> key, T value ) {
+        write().set( key, value );
+    }
+
+    @Override
+    public void setAll( Map<String, Object> values ) {
+        if( !values.isEmpty() ) write().setAll( values );
+    }
+
+    @Override
+    public void remove( String key ) {
+        var session = this.session;
+        if( session != null ) session.remove( key );
+    }
+
+    @Override
+    public void remove( SessionKey<?> key ) {
+        var session = this.session;
+        if( session != null ) session.remove( key );
+    }
+
+    @Override
+    public void invalidate() {
+        var session = this.session;
+        if( session != null ) session.invalidate();
+    }
+
+    @Override
+    public String toString() {
+        return "LazySession(id=" + id + ", session=" + session + ")";
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.reflect.Reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+/**
+ * Method bound to its instance once, at startup, as a {@link MethodHandle} spread over an argument array.
+ * Unlike {@link Reflection.Method#invoke(Object, Object...)} it skips the access check and argument copy on every
+ * call and throws exceptions of the method as is, not wrapped in an {@link java.lang.reflect.InvocationTargetException}.
+ * <p>
+ * The handle is held in an instance field, so JIT does not see it as a constant and cannot inline the method into
+ * the caller: a call costs about as much as an interface call, not as much as a direct one.
+ */
+public final class MethodInvoker {
+    private static final MethodType SPREAD = MethodType.methodType( Object.class, Object[].class );
+
+    public final Reflection.Method method;
+    private final MethodHandle handle;
+
+    private MethodInvoker( Reflection.Method method, MethodHandle handle ) {
+        this.method = method;
+        this.handle = handle;
+    }
+
+    public static MethodInvoker of( Reflection.Method method, Object instance ) {
+        var underlying = method.underlying;
+        try {
+            underlying.setAccessible( true );
+            var handle = MethodHandles.lookup().unreflect( underlying );
+            if( !Modifier.isStatic( underlying.getModifiers() ) ) handle = handle.bindTo( instance );
+
+            return new MethodInvoker( method, handle
+                .asSpreader( Object[].class, underlying.getParameterCount() )
+                .asType( SPREAD ) );
+        } catch( IllegalAccessException | RuntimeException e ) {
+            throw new WsException( "cannot bind " + underlying, e );
+        }
+    }
+
+    public Object invoke( Object[] args ) throws Throwable {
+        return ( Object ) handle.invokeExact( args );
+    }
+
+    @Override
+    public String toString() {
+        return method.underlying.toString();
+    }
+}
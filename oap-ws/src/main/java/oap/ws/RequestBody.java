@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import lombok.SneakyThrows;
+import oap.reflect.Reflect;
+import oap.reflect.Reflection;
+import oap.ws.codec.WsCodecs;
+
+import java.io.ByteArrayInputStream;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Buffered request body of a {@link WsParam.From#BODY} parameter. It is bound by parsing the bytes directly,
+ * the text is decoded only if somebody asks for it (a validator taking a String, a log message).
+ */
+public final class RequestBody {
+    public final byte[] bytes;
+    /**
+     * Content-Type of the request, selects the codec, may be null
+     */
+    public final String contentType;
+    private String text;
+
+    public RequestBody( byte[] bytes ) {
+        this( bytes, null );
+    }
+
+    public RequestBody( byte[] bytes, String contentType ) {
+        this.bytes = bytes;
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return text of the body, or of the optional body, leaves any other value as is
+     */
+    public static Object text( Object value ) {
+        if( value instanceof RequestBody body ) return body.asString();
+        if( value instanceof Optional<?> optional && optional.orElse( null ) instanceof RequestBody body )
+            return Optional.of( body.asString() );
+        return value;
+    }
+
+    public String asString() {
+        if( text == null ) text = new String( bytes, UTF_8 );
+        return text;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public <T> T unmarshal( Reflection reflection ) {
+        if( reflection.underlying == String.class ) return ( T ) asString();
+        if( reflection.isEnum() ) return ( T ) Enum.valueOf( ( Class<Enum> ) reflection.underlying, asString() );
+        return decode( reflection );
+    }
+
+    public <T> T unmarshal( Class<T> type ) {
+        return decode( Reflect.reflect( type ) );
+    }
+
+    @SneakyThrows
+    private <T> T decode( Reflection reflection ) {
+        return WsCodecs.forContentType( contentType ).orElse( WsCodecs.JSON )
+            .decode( reflection, new ByteArrayInputStream( bytes ) );
+    }
+
+    @Override
+    public String toString() {
+        return asString();
+    }
+}
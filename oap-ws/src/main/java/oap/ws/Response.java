@@ -25,16 +25,39 @@
 package oap.ws;
 
 import com.google.common.base.Preconditions;
+import io.undertow.util.DateUtils;
+import io.undertow.util.StatusCodes;
+import lombok.extern.slf4j.Slf4j;
 import oap.http.Cookie;
 import oap.http.server.nio.HttpServerExchange;
+import oap.json.Binder;
+import oap.ws.codec.WsCodec;
+import oap.ws.codec.WsCodecs;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.function.Consumer;
-
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static io.undertow.util.Headers.CACHE_CONTROL_STRING;
+import static io.undertow.util.Headers.ETAG_STRING;
+import static io.undertow.util.Headers.IF_MODIFIED_SINCE_STRING;
+import static io.undertow.util.Headers.IF_NONE_MATCH_STRING;
+import static io.undertow.util.Headers.LAST_MODIFIED_STRING;
+import static io.undertow.util.Headers.VARY_STRING;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static oap.http.Http.ContentType.APPLICATION_JSON;
 import static oap.http.Http.Headers.CONTENT_TYPE;
 import static oap.http.Http.Headers.LOCATION;
@@ -43,7 +66,10 @@ import static oap.http.Http.StatusCode.NOT_FOUND;
 import static oap.http.Http.StatusCode.NO_CONTENT;
 import static oap.http.Http.StatusCode.OK;
 
+@Slf4j
 public class Response {
+    static final String GZIP_ETAG_SUFFIX = "-gzip";
+
     public final HashMap<String, String> headers = new HashMap<>();
     public final ArrayList<Cookie> cookies = new ArrayList<>();
     public int code;
@@ -51,6 +77,12 @@ public class Response {
     public Object body;
     public boolean raw;
     public String reasonPhrase;
+    private Supplier<?> bodySupplier;
+    private WsCodec codec;
+    /**
+     * set when the body comes from it, to reuse what it has already compressed
+     */
+    BufferedResponse buffered;
 
     public Response( int code ) {
         this( code, null );
@@ -92,6 +124,15 @@ public class Response {
         return new Response( OK );
     }
 
+    /**
+     * Response with an ETag from a cheap version stamp, the body is built only if the client does not have this version.
+     */
+    public static Response versioned( String version, Supplier<?> body ) {
+        var response = jsonOk().withETag( version );
+        response.bodySupplier = body;
+        return response;
+    }
+
     public static Response redirect( URI uri ) {
         return redirect( uri.toString() );
     }
@@ -135,13 +176,90 @@ public class Response {
         return this;
     }
 
+    /**
+     * Encodes the body with the codec instead of JSON, the content type is the one of the codec.
+     */
+    public Response withCodec( WsCodec codec ) {
+        this.codec = codec;
+        this.contentType = codec.contentType();
+
+        return this;
+    }
+
     public Response withCookie( Cookie cookie ) {
         cookies.add( cookie );
 
         return this;
     }
 
+    /**
+     * @param version strong entity tag, without quotes
+     */
+    public Response withETag( String version ) {
+        return withHeader( ETAG_STRING, '"' + version + '"' );
+    }
+
+    public Response withLastModified( long millis ) {
+        return withHeader( LAST_MODIFIED_STRING, DateUtils.toDateString( new Date( millis ) ) );
+    }
+
+    public String etag() {
+        return headers.get( ETAG_STRING );
+    }
+
+    /**
+     * Evaluates If-None-Match, or If-Modified-Since when there is no If-None-Match, against this response.
+     */
+    public boolean notModified( HttpServerExchange exchange ) {
+        var ifNoneMatch = exchange.getRequestHeader( IF_NONE_MATCH_STRING );
+        if( ifNoneMatch != null ) {
+            var etag = etag();
+            if( etag == null ) return false;
+            for( var tag : ifNoneMatch.split( "," ) ) {
+                var trimmed = tag.trim();
+                if( trimmed.equals( "*" ) || weak( trimmed ).equals( weak( etag ) ) ) return true;
+            }
+            return false;
+        }
+
+        var ifModifiedSince = exchange.getRequestHeader( IF_MODIFIED_SINCE_STRING );
+        var lastModified = headers.get( LAST_MODIFIED_STRING );
+        if( ifModifiedSince == null || lastModified == null ) return false;
+        var since = DateUtils.parseDate( ifModifiedSince );
+        var modified = DateUtils.parseDate( lastModified );
+        return since != null && modified != null && !modified.after( since );
+    }
+
+    /**
+     * Weak comparison, the tag of the gzipped representation matches the tag of the body.
+     */
+    private static String weak( String etag ) {
+        var tag = etag.startsWith( "W/" ) ? etag.substring( 2 ) : etag;
+        return tag.endsWith( GZIP_ETAG_SUFFIX + '"' ) ? tag.substring( 0, tag.length() - GZIP_ETAG_SUFFIX.length() - 1 ) + '"' : tag;
+    }
+
+    /**
+     * @return 304 with the validators of this response and without body
+     */
+    public Response toNotModified() {
+        var response = new Response( StatusCodes.NOT_MODIFIED );
+        for( var name : List.of( ETAG_STRING, LAST_MODIFIED_STRING, CACHE_CONTROL_STRING, VARY_STRING ) ) {
+            var value = headers.get( name );
+            if( value != null ) response.headers.put( name, value );
+        }
+        response.cookies.addAll( cookies );
+        return response;
+    }
+
+    private void resolveBody() {
+        if( bodySupplier != null ) {
+            body = bodySupplier.get();
+            bodySupplier = null;
+        }
+    }
+
     public String bodyToString() {
+        resolveBody();
         if( body == null ) return null;
 
         if( body instanceof byte[] bytes ) return new String( bytes );
@@ -168,6 +286,7 @@ public class Response {
 
     @SuppressWarnings( "unchecked" )
     public void send( HttpServerExchange exchange ) {
+        resolveBody();
         exchange.setStatusCode( code );
         if( reasonPhrase != null ) exchange.setReasonPhrase( reasonPhrase );
         headers.forEach( exchange::setResponseHeader );
@@ -176,14 +295,205 @@ public class Response {
         if( body != null )
             if( body instanceof byte[] bytes ) exchange.send( bytes );
             else if( body instanceof ByteBuffer byteBuffer ) exchange.send( byteBuffer );
+            else if( codec != null && !raw ) sendEncoded( exchange, codec, materialize( body ) );
             else if( body instanceof String string )
                 if( raw ) exchange.send( string );
+                else if( isJson() ) sendEncoded( exchange, WsCodecs.JSON, string );
                 else exchange.send( HttpServerExchange.contentToString( false, string, contentType ) );
             else if( body instanceof Consumer cons ) cons.accept( exchange.getOutputStream() );
+            else if( !raw && isJson() && body instanceof Stream<?> stream ) sendJsonArray( exchange, stream.iterator(), stream );
+            else if( !raw && isJson() && body instanceof Iterator<?> iterator )
+                sendJsonArray( exchange, iterator, iterator instanceof AutoCloseable closeable ? closeable : null );
             else {
                 Preconditions.checkArgument( !raw );
-                exchange.send( HttpServerExchange.contentToString( false, body, contentType ) );
+                if( isJson() ) sendEncoded( exchange, WsCodecs.JSON, body );
+                else exchange.send( HttpServerExchange.contentToString( false, body, contentType ) );
             }
         else exchange.endExchange();
     }
+
+    /**
+     * Serializes the body the same way {@link #send(HttpServerExchange)} does.
+     *
+     * @return the body bytes, null without body
+     */
+    @SuppressWarnings( "unchecked" )
+    public byte[] bodyBytes() {
+        resolveBody();
+        if( body == null ) return null;
+
+        if( body instanceof byte[] bytes ) return bytes;
+        if( body instanceof ByteBuffer byteBuffer ) {
+            var bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.duplicate().get( bytes );
+            return bytes;
+        }
+        if( body instanceof String string && codec == null && ( raw || !isJson() ) )
+            return ( raw ? string : HttpServerExchange.contentToString( false, string, contentType ) ).getBytes( UTF_8 );
+
+        var out = new ByteArrayOutputStream();
+        try {
+            writeBody( out );
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the body is written while it is produced, it is never held in memory as a whole
+     */
+    public boolean streamed() {
+        resolveBody();
+        return body instanceof Stream<?> || body instanceof Iterator<?> || body instanceof Consumer<?>;
+    }
+
+    /**
+     * Gzips a {@link #streamed()} body while it is written, so memory stays flat however long the body is.
+     */
+    Response gzipStreamed( int level ) {
+        resolveBody();
+        var source = new Response( code, reasonPhrase, contentType, body, raw );
+        source.codec = codec;
+
+        Consumer<OutputStream> gzipped = out -> {
+            try( var gzip = new GZIPOutputStream( out, 8192 ) {
+                {
+                    def.setLevel( level );
+                }
+            } ) {
+                source.writeBody( gzip );
+            } catch( IOException e ) {
+                log.debug( "sending aborted: {}", e.getMessage() );
+            }
+        };
+        body = gzipped;
+        raw = true;
+        codec = null;
+        return this;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private void writeBody( OutputStream out ) throws IOException {
+        if( body instanceof byte[] bytes ) out.write( bytes );
+        else if( body instanceof ByteBuffer byteBuffer ) {
+            var bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.duplicate().get( bytes );
+            out.write( bytes );
+        } else if( body instanceof String string && codec == null && ( raw || !isJson() ) )
+            out.write( ( raw ? string : HttpServerExchange.contentToString( false, string, contentType ) ).getBytes( UTF_8 ) );
+        else if( codec != null && !raw ) codec.encode( materialize( body ), out );
+        else if( body instanceof Consumer cons ) cons.accept( out );
+        else if( !raw && isJson() && body instanceof Stream<?> stream ) {
+            try( stream ) {
+                writeJsonArray( stream.iterator(), out );
+            }
+        } else if( !raw && isJson() && body instanceof Iterator<?> iterator ) {
+            try {
+                writeJsonArray( iterator, out );
+            } finally {
+                if( iterator instanceof AutoCloseable closeable ) close( closeable );
+            }
+        } else {
+            Preconditions.checkArgument( !raw );
+            if( isJson() ) Binder.json.marshal( body, out );
+            else out.write( HttpServerExchange.contentToString( false, body, contentType ).getBytes( UTF_8 ) );
+        }
+    }
+
+    boolean isJson() {
+        return contentType != null && contentType.startsWith( APPLICATION_JSON );
+    }
+
+    /**
+     * Binary codecs have no streaming array support, streamed results are collected first.
+     */
+    private static Object materialize( Object body ) {
+        if( body instanceof Stream<?> stream ) {
+            try( stream ) {
+                return stream.toList();
+            }
+        }
+        if( body instanceof Iterator<?> iterator ) {
+            var list = new ArrayList<>();
+            iterator.forEachRemaining( list::add );
+            if( iterator instanceof AutoCloseable closeable ) close( closeable );
+            return list;
+        }
+        return body;
+    }
+
+    /**
+     * Serializes the body straight into the pooled buffers of the exchange output stream,
+     * without an intermediate String. A body that fits into the buffer is sent with a content length.
+     */
+    private static void sendEncoded( HttpServerExchange exchange, WsCodec codec, Object body ) {
+        try( var out = exchange.getOutputStream() ) {
+            codec.encode( body, new ShieldedOutputStream( out ) );
+        } catch( IOException e ) {
+            log.debug( "sending aborted: {}", e.getMessage() );
+        }
+    }
+
+    /**
+     * Writes elements one by one straight to the response, so that memory does not depend on the size of the result.
+     * There is no content length, so undertow uses chunked transfer encoding.
+     * The source is closed when the response is complete or the client has gone.
+     */
+    private static void sendJsonArray( HttpServerExchange exchange, Iterator<?> iterator, AutoCloseable source ) {
+        if( source != null ) exchange.exchange.addExchangeCompleteListener( ( ex, next ) -> {
+            close( source );
+            next.proceed();
+        } );
+
+        try( var out = exchange.getOutputStream() ) {
+            writeJsonArray( iterator, out );
+        } catch( IOException e ) {
+            log.debug( "streaming aborted: {}", e.getMessage() );
+        } finally {
+            if( source != null ) close( source );
+        }
+    }
+
+    private static void writeJsonArray( Iterator<?> iterator, OutputStream out ) throws IOException {
+        var element = new ShieldedOutputStream( out );
+        out.write( '[' );
+        boolean first = true;
+        while( iterator.hasNext() ) {
+            if( !first ) out.write( ',' );
+            first = false;
+            Binder.json.marshal( iterator.next(), element );
+        }
+        out.write( ']' );
+    }
+
+    private static void close( AutoCloseable closeable ) {
+        try {
+            closeable.close();
+        } catch( Exception e ) {
+            log.trace( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Serialization must neither close nor flush the response: flushing would send the buffer as a chunk.
+     */
+    private static class ShieldedOutputStream extends FilterOutputStream {
+        private ShieldedOutputStream( OutputStream out ) {
+            super( out );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            out.write( b, off, len );
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -26,42 +26,193 @@ package oap.ws;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-@ToString
+/**
+ * Attributes of {@link SessionKey}s are kept in an array, a slot per key, any other attributes in a map.
+ * The typed accessors are plain array reads, the ones by name resolve the key first.
+ */
+@ToString( exclude = "listener" )
 @EqualsAndHashCode( of = "id" )
 public class Session {
+    static final AtomicReferenceArray<Object> NO_SLOTS = new AtomicReferenceArray<>( 0 );
+
+    /**
+     * No attributes and no changes, what a session that does not exist reads as.
+     */
+    public static final Session EMPTY = new Session( "", NO_SLOTS, null ) {
+        @Override
+        public void set( String key, Object value ) {
+            throw new UnsupportedOperationException( "empty session" );
+        }
+
+        @Override
+        public <T> void set( SessionKey<T> key, T value ) {
+            throw new UnsupportedOperationException( "empty session" );
+        }
+
+        @Override
+        public void remove( String key ) {
+            throw new UnsupportedOperationException( "empty session" );
+        }
+
+        @Override
+        public void remove( SessionKey<?> key ) {
+            throw new UnsupportedOperationException( "empty session" );
+        }
+
+        @Override
+        public void invalidate() {
+            throw new UnsupportedOperationException( "empty session" );
+        }
+    };
+
     public final String id;
-    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Object> slots;
+    private volatile Map<String, Object> values;
+    private final Listener listener;
 
     public Session( String id ) {
+        this( id, Map.of(), null );
+    }
+
+    /**
+     * @param values   attributes the session is restored with
+     * @param listener told about every change, null for none
+     * @see oap.ws.session.SessionStore
+     */
+    public Session( String id, Map<String, Object> values, Listener listener ) {
+        this( id, new AtomicReferenceArray<>( SessionKey.slots() ), listener );
+        values.forEach( ( key, value ) -> put( key, slot( key ), value ) );
+    }
+
+    /**
+     * @param slots {@link #NO_SLOTS} for a session that overrides every accessor and keeps no attributes itself,
+     *              such as {@link LazySession}: it allocates nothing but itself
+     */
+    Session( String id, AtomicReferenceArray<Object> slots, Listener listener ) {
         this.id = id;
+        this.slots = slots;
+        this.listener = listener;
+    }
+
+    private int slot( SessionKey<?> key ) {
+        int slot = key.slot;
+        return slot >= 0 && slot < slots.length() ? slot : -1;
+    }
+
+    private int slot( String name ) {
+        var key = SessionKey.find( name );
+        return key != null ? slot( key ) : -1;
+    }
+
+    private Map<String, Object> values() {
+        var values = this.values;
+        if( values == null ) synchronized( this ) {
+            values = this.values;
+            if( values == null ) this.values = values = new ConcurrentHashMap<>();
+        }
+        return values;
+    }
+
+    private Object read( String name, int slot ) {
+        if( slot >= 0 ) return slots.get( slot );
+        var values = this.values;
+        return values != null ? values.get( name ) : null;
+    }
+
+    private void put( String name, int slot, Object value ) {
+        if( slot >= 0 ) slots.set( slot, Objects.requireNonNull( value ) );
+        else values().put( name, value );
+    }
+
+    private void delete( String name, int slot ) {
+        if( slot >= 0 ) slots.set( slot, null );
+        else {
+            var values = this.values;
+            if( values != null ) values.remove( name );
+        }
     }
 
     @SuppressWarnings( "unchecked" )
     public <A> Optional<A> get( String key ) {
-        return Optional.ofNullable( ( A ) values.get( key ) );
+        return Optional.ofNullable( ( A ) read( key, slot( key ) ) );
+    }
+
+    /**
+     * @return null if the session has no such attribute
+     */
+    @SuppressWarnings( "unchecked" )
+    public <T> T get( SessionKey<T> key ) {
+        return ( T ) read( key.name, slot( key ) );
     }
 
     public void set( String key, Object value ) {
-        values.put( key, value );
+        put( key, slot( key ), value );
+        if( listener != null ) listener.set( this, key, value );
+    }
+
+    public <T> void set( SessionKey<T> key, T value ) {
+        put( key.name, slot( key ), value );
+        if( listener != null ) listener.set( this, key.name, value );
     }
 
     public void remove( String key ) {
-        values.remove( key );
+        delete( key, slot( key ) );
+        if( listener != null ) listener.remove( this, key );
+    }
+
+    public void remove( SessionKey<?> key ) {
+        delete( key.name, slot( key ) );
+        if( listener != null ) listener.remove( this, key.name );
     }
 
     public void invalidate() {
-        values.clear();
+        for( int i = 0; i < slots.length(); i++ ) slots.set( i, null );
+        var values = this.values;
+        if( values != null ) values.clear();
+        if( listener != null ) listener.clear( this );
     }
 
     public void setAll( Map<String, Object> values ) {
-        this.values.putAll( values );
+        values.forEach( ( key, value ) -> set( key, value ) );
     }
 
     public boolean containsKey( String key ) {
-        return values.containsKey( key );
+        return read( key, slot( key ) ) != null;
+    }
+
+    public boolean contains( SessionKey<?> key ) {
+        return read( key.name, slot( key ) ) != null;
+    }
+
+    /**
+     * @return a copy of the attributes
+     */
+    public Map<String, Object> attributes() {
+        var attributes = new HashMap<String, Object>();
+        for( int i = 0; i < slots.length(); i++ ) {
+            var value = slots.get( i );
+            if( value != null ) attributes.put( SessionKey.at( i ).name, value );
+        }
+        var values = this.values;
+        if( values != null ) attributes.putAll( values );
+        return Map.copyOf( attributes );
+    }
+
+    /**
+     * Changes of a session, for stores keeping it anywhere but on heap.
+     */
+    public interface Listener {
+        void set( Session session, String key, Object value );
+
+        void remove( Session session, String key );
+
+        void clear( Session session );
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A typed session attribute. Keys are interned by name to a slot of every session created after them,
+ * so they are meant to be static constants:
+ * <pre>
+ * public static final SessionKey&lt;User&gt; USER = SessionKey.of( "loggedUser", User.class );
+ * </pre>
+ * A key and its name reach the same attribute, {@code session.get( USER )} and {@code session.get( "loggedUser" )}.
+ * Keys over {@link #MAX_SLOTS} and keys interned after a session was created are kept in its map of other attributes.
+ */
+public final class SessionKey<T> {
+    public static final int MAX_SLOTS = 32;
+
+    private static final ConcurrentHashMap<String, SessionKey<?>> keys = new ConcurrentHashMap<>();
+    private static final SessionKey<?>[] bySlot = new SessionKey<?>[MAX_SLOTS];
+    private static volatile int slots;
+
+    public final String name;
+    public final Class<T> type;
+    final int slot;
+
+    private SessionKey( String name, Class<T> type, int slot ) {
+        this.name = name;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public static synchronized <T> SessionKey<T> of( String name, Class<T> type ) {
+        var key = keys.get( name );
+        if( key != null ) {
+            if( key.type != type )
+                throw new IllegalArgumentException( "session key " + name + " is " + key.type.getName() + ", not " + type.getName() );
+            return ( SessionKey<T> ) key;
+        }
+
+        var created = new SessionKey<>( name, type, slots < MAX_SLOTS ? slots : -1 );
+        keys.put( name, created );
+        if( created.slot >= 0 ) {
+            bySlot[created.slot] = created;
+            slots = created.slot + 1;
+        }
+        return created;
+    }
+
+    /**
+     * @return null if no key has this name
+     */
+    static SessionKey<?> find( String name ) {
+        return keys.get( name );
+    }
+
+    static SessionKey<?> at( int slot ) {
+        return bySlot[slot];
+    }
+
+    static int slots() {
+        return slots;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -21,19 +21,20 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
 package oap.ws;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import oap.util.Cuid;
+import oap.ws.session.OnHeapSessionStore;
+import oap.ws.session.SessionStore;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-
+/**
+ * Sessions by the {@link #COOKIE_ID} cookie. Where they are kept is up to the {@link SessionStore}: unbounded on heap
+ * by default, see {@link oap.ws.session} for the bounded, off-heap and file backed ones.
+ */
 @Slf4j
 public class SessionManager {
     public static final String COOKIE_ID = "SID";
@@ -42,47 +43,93 @@ public class SessionManager {
     public final String cookiePath;
     public final long cookieExpiration;
     public final Boolean cookieSecure;
-    private final Cache<String, Session> sessions;
+    private final SessionStore store;
     protected Cuid cuid = Cuid.UNIQUE;
 
-    public SessionManager( long expirationTime, String cookieDomain, String cookiePath, Boolean cookieSecure ) {
-        this.sessions = CacheBuilder.newBuilder()
-            .expireAfterAccess( expirationTime, MILLISECONDS )
-            .build();
+    /**
+     * @param store null for unbounded on heap sessions
+     */
+    public SessionManager( long expirationTime, String cookieDomain, String cookiePath, Boolean cookieSecure, SessionStore store ) {
+        this.store = store != null ? store : new OnHeapSessionStore( expirationTime, -1 );
         this.cookieDomain = cookieDomain;
         this.cookiePath = cookiePath;
         this.cookieExpiration = expirationTime;
-        this.cookieSecure = cookieSecure;
+        this.cookieSecure = cookieSecure != null ? cookieSecure : false;
+    }
+
+    public SessionManager( long expirationTime, String cookieDomain, String cookiePath, Boolean cookieSecure ) {
+        this( expirationTime, cookieDomain, cookiePath, cookieSecure, null );
     }
 
     public SessionManager( long expirationTime, String cookieDomain, String cookiePath ) {
-        this.sessions = CacheBuilder.newBuilder()
-            .expireAfterAccess( expirationTime, MILLISECONDS )
-            .build();
-        this.cookieDomain = cookieDomain;
-        this.cookiePath = cookiePath;
-        this.cookieExpiration = expirationTime;
-        this.cookieSecure = false;
+        this( expirationTime, cookieDomain, cookiePath, false, null );
     }
 
     public Optional<Session> get( String id ) {
-        return Optional.ofNullable( sessions.getIfPresent( id ) );
+        return store.get( id );
     }
 
-    @SneakyThrows
     public Session getOrInit( String id ) {
-        String sessionId = id == null ? cuid.next() : id;
-        return sessions.get( sessionId, () -> {
-            log.trace( "creating new session {}", sessionId );
-            return new Session( sessionId );
-        } );
+        return store.getOrCreate( id == null ? cuid.next() : id );
+    }
+
+    /**
+     * Nothing is stored for requests that only read: a missing session is stored with its first change, onCreate is
+     * called then to hand out the id.
+     *
+     * @param id null for a new id
+     * @return the stored session or a lazy one, see {@link #isStored(Session)}
+     */
+    public Session lookup( String id, Consumer<Session> onCreate ) {
+        if( id != null ) {
+            var session = store.get( id );
+            if( session.isPresent() ) return session.get();
+        }
+        return new LazySession( id != null ? id : cuid.next(), store, onCreate );
+    }
+
+    /**
+     * @return the session or {@link Session#EMPTY}, never stores anything
+     */
+    public Session view( String id ) {
+        return id == null ? Session.EMPTY : store.get( id ).orElse( Session.EMPTY );
+    }
+
+    /**
+     * @return false for a session from {@link #lookup(String, Consumer)} that was not changed yet
+     */
+    public static boolean isStored( Session session ) {
+        return !( session instanceof LazySession lazy ) || lazy.created();
+    }
+
+    /**
+     * Hands the session of a completed request back to the store, see {@link SessionStore#release(Session)}.
+     */
+    public void release( Session session ) {
+        if( session instanceof LazySession lazy ) {
+            var stored = lazy.stored();
+            if( stored != null ) store.release( stored );
+        } else store.release( session );
     }
 
     public void clear() {
-        sessions.invalidateAll();
+        store.clear();
     }
 
     public void remove( String id ) {
-        sessions.invalidate( id );
+        store.remove( id );
+    }
+
+    public long size() {
+        return store.size();
+    }
+
+    public void start() {
+        store.start();
+    }
+
+    public void stop() {
+        log.debug( "closing session store {}", store.getClass().getSimpleName() );
+        store.close();
     }
 }
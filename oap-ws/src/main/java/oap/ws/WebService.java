@@ -23,27 +23,49 @@
  */
 package oap.ws;
 
+import com.google.common.util.concurrent.UncheckedTimeoutException;
 import io.undertow.server.handlers.Cookie;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
 import lombok.extern.slf4j.Slf4j;
 import oap.http.Http;
 import oap.http.server.nio.HttpHandler;
 import oap.http.server.nio.HttpServerExchange;
+import oap.reflect.Reflect;
 import oap.reflect.ReflectException;
 import oap.reflect.Reflection;
-import oap.util.Result;
 import oap.util.Throwables;
+import oap.ws.codec.WsCodecs;
 import oap.ws.interceptor.Interceptor;
 import oap.ws.interceptor.Interceptors;
+import oap.ws.limit.Limiter;
+import oap.ws.WsMetrics.Stage;
 import oap.ws.validate.ValidationErrors;
-import oap.ws.validate.Validators;
 import org.joda.time.DateTime;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.undertow.util.Headers.ACCEPT_ENCODING_STRING;
+import static io.undertow.util.Headers.ACCEPT_STRING;
+import static io.undertow.util.Headers.AUTHORIZATION_STRING;
+import static io.undertow.util.Headers.CONTENT_ENCODING_STRING;
+import static io.undertow.util.Headers.ETAG_STRING;
+import static io.undertow.util.Headers.GZIP;
+import static io.undertow.util.Headers.RETRY_AFTER_STRING;
+import static io.undertow.util.Headers.VARY_STRING;
 
 @Slf4j
 public class WebService implements HttpHandler {
@@ -52,16 +74,55 @@ public class WebService implements HttpHandler {
     private final SessionManager sessionManager;
     private final List<Interceptor> interceptors;
     private final Object instance;
-    private final WsMethodMatcher methodMatcher;
+    private final WsRouter router;
+    private final long maxBodySize;
+    private final WsResponseCache responseCache;
+    private final boolean etag;
+    private final Limiter limiter;
+    private final String retryAfter;
+    private final ConcurrentHashMap<WsMethodPlan, SingleFlight<String, BufferedResponse>> flights = new ConcurrentHashMap<>();
+    /**
+     * null for no limit
+     */
+    private final Semaphore timedCalls;
+    private final int maxTimedCalls;
 
     public WebService( Object instance, boolean sessionAware,
                        SessionManager sessionManager, List<Interceptor> interceptors, boolean compressionSupport ) {
+        this( instance, sessionManager, interceptors, config( sessionAware, compressionSupport ) );
+    }
+
+    public WebService( Object instance, SessionManager sessionManager, List<Interceptor> interceptors, WsConfig config ) {
+        this( instance, sessionManager, interceptors, config, null );
+    }
+
+    /**
+     * @param responseCache null disables {@link WsCache}
+     */
+    public WebService( Object instance, SessionManager sessionManager, List<Interceptor> interceptors, WsConfig config,
+                       WsResponseCache responseCache ) {
         this.instance = instance;
-        this.methodMatcher = new WsMethodMatcher( instance.getClass() );
-        this.sessionAware = sessionAware;
+        var plans = new HashMap<Reflection.Method, WsMethodPlan>();
+        this.router = new WsRouter( Reflect.reflect( instance.getClass() ),
+            method -> plans.computeIfAbsent( method, m -> new WsMethodPlan( m, instance, config ) ) );
+        this.sessionAware = config.sessionAware;
         this.sessionManager = sessionManager;
         this.interceptors = interceptors;
-        this.compressionSupport = compressionSupport;
+        this.compressionSupport = config.compression;
+        this.maxBodySize = config.maxBodySize;
+        this.responseCache = responseCache;
+        this.etag = config.etag;
+        this.limiter = config.concurrencyLimit != null ? config.concurrencyLimit.limiter( instance.getClass().getName() ) : null;
+        this.retryAfter = config.concurrencyLimit != null ? String.valueOf( config.concurrencyLimit.retryAfter ) : null;
+        this.maxTimedCalls = config.maxTimedCalls;
+        this.timedCalls = config.maxTimedCalls >= 0 ? new Semaphore( config.maxTimedCalls ) : null;
+    }
+
+    private static WsConfig config( boolean sessionAware, boolean compressionSupport ) {
+        var config = new WsConfig();
+        config.sessionAware = sessionAware;
+        config.compression = compressionSupport;
+        return config;
     }
 
     private void wsError( HttpServerExchange exchange, Throwable e ) {
@@ -69,15 +130,21 @@ public class WebService implements HttpHandler {
             wsError( exchange, e.getCause() );
         else if( e instanceof InvocationTargetException itException )
             wsError( exchange, itException.getTargetException() );
-        else if( e instanceof WsClientException clientException ) {
-            log.debug( this + ": " + clientException, clientException );
+        else if( e instanceof CompletionException && e.getCause() != null )
+            wsError( exchange, e.getCause() );
+        else if( e instanceof TimeoutException || e instanceof UncheckedTimeoutException ) {
+            log.debug( "{}: timeout", this );
+            if( !exchange.isResponseStarted() )
+                exchange.setStatusCodeReasonPhrase( StatusCodes.GATEWAY_TIMEOUT, StatusCodes.GATEWAY_TIMEOUT_STRING );
+        } else if( e instanceof WsClientException clientException ) {
+            if( log.isDebugEnabled() ) log.debug( "{}: {}", this, clientException.toString(), clientException );
             if( !exchange.isResponseStarted() ) {
                 exchange.setStatusCodeReasonPhrase( clientException.code, e.getMessage() );
                 if( !clientException.errors.isEmpty() )
                     exchange.responseJson( new ValidationErrors.ErrorResponse( clientException.errors ) );
             }
         } else {
-            log.error( this + ": " + e.toString(), e );
+            log.error( "{}: {}", this, e.toString(), e );
             if( !exchange.isResponseStarted() )
                 exchange.responseJson( Http.StatusCode.INTERNAL_SERVER_ERROR, e.getMessage(), new JsonStackTraceResponse( e ) );
         }
@@ -86,99 +153,417 @@ public class WebService implements HttpHandler {
     @Override
     public void handleRequest( HttpServerExchange exchange ) {
         try {
+            long start = System.nanoTime();
             var requestLine = exchange.getRelativePath();
-            var method = methodMatcher.findMethod( requestLine, exchange.getRequestMethod() ).orElse( null );
-            log.trace( "invoking {} for {}", method, requestLine );
-            if( method != null ) {
+            var match = router.match( requestLine, exchange.getRequestMethod() );
+            if( log.isTraceEnabled() ) log.trace( "invoking {} for {}", match != null ? match.route : null, requestLine );
+            if( match != null ) {
+                measure( exchange, match.plan.metrics(), start );
+                limitBody( exchange );
+
+                var deadline = Deadline.after( match.plan.timeout ).min( Deadline.parse( exchange.getRequestHeader( Deadline.HEADER ) ) );
+                deadline.check();
+                // shed load before any session work, a lookup may go to a remote store
+                if( !admit( exchange, match.plan ) ) return;
+
                 Session session = null;
                 if( sessionAware ) {
-                    String cookie = exchange.getRequestCookieValue( SessionManager.COOKIE_ID );
-                    log.trace( "session cookie {}", cookie );
-                    session = sessionManager.getOrInit( cookie );
-                    log.trace( "session for {} is {}", this, session );
+                    // a batch resolves the session once for all of its sub-requests and releases it itself
+                    session = exchange.exchange.getAttachment( WsBatchHandler.SESSION );
+                    if( session == null ) {
+                        String cookie = exchange.getRequestCookieValue( SessionManager.COOKIE_ID );
+                        session = sessionManager.lookup( cookie, created -> setSessionCookie( exchange, created ) );
+                        release( exchange, session );
+                        if( log.isTraceEnabled() ) log.trace( "session for {} is {}, cookie {}", this, session, cookie );
+                    }
                 }
 
-                handleInternal( new InvocationContext( exchange, session, method ) );
+                handleInternal( new InvocationContext( exchange, session, match, deadline ) );
             } else {
-                log.trace( "[{}] not found", requestLine );
+                if( log.isTraceEnabled() ) log.trace( "[{}] not found", requestLine );
                 exchange.responseNotFound();
                 exchange.endExchange();
             }
 
         } catch( Throwable e ) {
-            log.trace( e.getMessage(), e );
+            if( log.isTraceEnabled() ) log.trace( e.getMessage(), e );
             wsError( exchange, e );
         }
     }
 
+    private void release( HttpServerExchange exchange, Session session ) {
+        exchange.exchange.addExchangeCompleteListener( ( undertowExchange, next ) -> {
+            try {
+                sessionManager.release( session );
+            } finally {
+                next.proceed();
+            }
+        } );
+    }
+
+    private static void measure( HttpServerExchange exchange, WsMetrics metrics, long start ) {
+        metrics.stage( Stage.ROUTE, start );
+        exchange.exchange.addExchangeCompleteListener( ( undertowExchange, next ) -> {
+            try {
+                metrics.request( undertowExchange.getStatusCode(), System.nanoTime() - start,
+                    undertowExchange.getRequestContentLength(), undertowExchange.getResponseBytesSent() );
+            } finally {
+                next.proceed();
+            }
+        } );
+    }
+
+    /**
+     * Rejects the request with 503 if the service is over its concurrency limit, otherwise holds a slot
+     * until the exchange completes.
+     */
+    private boolean admit( HttpServerExchange exchange, WsMethodPlan plan ) {
+        if( limiter == null ) return true;
+
+        var token = limiter.tryAcquire( plan.priority );
+        if( token == null ) {
+            if( log.isTraceEnabled() ) log.trace( "{}: rejected {}, limit {}", this, plan, limiter.limit() );
+            exchange.setResponseHeader( RETRY_AFTER_STRING, retryAfter );
+            exchange.setStatusCodeReasonPhrase( StatusCodes.SERVICE_UNAVAILABLE, "overloaded" );
+            exchange.endExchange();
+            return false;
+        }
+
+        exchange.exchange.addExchangeCompleteListener( ( undertowExchange, next ) -> {
+            try {
+                int code = undertowExchange.getStatusCode();
+                token.release( code == StatusCodes.SERVICE_UNAVAILABLE || code == StatusCodes.GATEWAY_TIMEOUT );
+            } finally {
+                next.proceed();
+            }
+        } );
+        return true;
+    }
+
+    /**
+     * Rejects a declared oversized body before anything is read, a chunked one fails once it grows over the limit.
+     */
+    private void limitBody( HttpServerExchange exchange ) {
+        if( maxBodySize < 0 ) return;
+
+        if( exchange.exchange.getRequestContentLength() > maxBodySize )
+            throw WsClientException.stackless( "request body is larger than " + maxBodySize + " bytes",
+                StatusCodes.REQUEST_ENTITY_TOO_LARGE, List.of() );
+        // batch sub-requests have no connection, their body is in memory and always declared
+        if( exchange.exchange.getConnection() != null ) exchange.exchange.setMaxEntitySize( maxBodySize );
+    }
+
     private void buildErrorResponse( HttpServerExchange exchange, ValidationErrors validationErrors ) {
         exchange.responseJson( validationErrors.code, "validation failed", new ValidationErrors.ErrorResponse( validationErrors.errors ) );
     }
 
 
     private void handleInternal( InvocationContext context ) {
-        log.trace( "{}: session: [{}]", this, context.session );
+        if( log.isTraceEnabled() ) log.trace( "{}: session: [{}]", this, context.session );
 
-        var wsMethod = context.method.findAnnotation( WsMethod.class );
+        var plan = context.plan;
+        var metrics = plan.metrics();
 
-        Interceptors.before( interceptors, context )
-            .ifPresentOrElse(
-                response -> response.send( context.exchange ),
-                () -> {
-                    var unparsedParameters = context.unparsedParameters();
+        long time = System.nanoTime();
+        var intercepted = Interceptors.before( interceptors, context );
+        time = metrics.stage( Stage.INTERCEPTORS_BEFORE, time );
+        if( intercepted.isPresent() ) {
+            intercepted.get().send( context.exchange );
+            return;
+        }
 
-                    ValidationErrors validationErrors = ValidationErrors.empty().validateParameters( unparsedParameters, context.method, instance, true );
+        var cacheKey = cacheKey( context );
+        if( cacheKey != null ) {
+            var cached = responseCache.get( plan.cacheRegion, cacheKey );
+            if( cached.isPresent() ) {
+                send( context, cached.get().response(), null );
+                return;
+            }
+        }
 
-                    if( !validationErrors.isEmpty() ) {
-                        buildErrorResponse( context.exchange, validationErrors );
-                        return;
-                    }
+        var unparsedArguments = context.unparsedArguments();
+        time = metrics.stage( Stage.EXTRACT, time );
 
-                    validationErrors = Validators.forMethod( context.method, instance, true )
-                        .validate( unparsedParameters.values().toArray( new Object[0] ), unparsedParameters );
+        ValidationErrors validationErrors = plan.validateParameters( unparsedArguments, true );
 
-                    if( !validationErrors.isEmpty() ) {
-                        buildErrorResponse( context.exchange, validationErrors );
-                        return;
-                    }
+        if( !validationErrors.isEmpty() ) {
+            buildErrorResponse( context.exchange, validationErrors );
+            return;
+        }
 
-                    Map<Reflection.Parameter, Object> values = context.parsedParameters();
+        validationErrors = plan.validateMethod( unparsedArguments, true );
 
-                    validationErrors = ValidationErrors.empty()
-                        .validateParameters( values, context.method, instance, false );
+        if( !validationErrors.isEmpty() ) {
+            buildErrorResponse( context.exchange, validationErrors );
+            return;
+        }
+        time = metrics.stage( Stage.VALIDATE_BEFORE_UNMARSHAL, time );
 
-                    if( !validationErrors.isEmpty() ) {
-                        buildErrorResponse( context.exchange, validationErrors );
-                        return;
-                    }
+        var arguments = context.arguments();
+        time = metrics.stage( Stage.UNMARSHAL, time );
 
-                    var paramValues = values.values().toArray( new Object[0] );
-                    validationErrors = Validators
-                        .forMethod( context.method, instance, false )
-                        .validate( paramValues, values );
+        validationErrors = plan.validateParameters( arguments, false );
 
-                    if( !validationErrors.isEmpty() ) {
-                        buildErrorResponse( context.exchange, validationErrors );
-                        return;
-                    }
+        if( !validationErrors.isEmpty() ) {
+            buildErrorResponse( context.exchange, validationErrors );
+            return;
+        }
 
-                    if( context.session != null && !containsSessionCookie( context.exchange.responseCookies() ) ) {
-                        var cookie = new oap.http.Cookie( SessionManager.COOKIE_ID, context.session.id )
-                            .withPath( sessionManager.cookiePath )
-                            .withExpires( DateTime.now().plus( sessionManager.cookieExpiration ) )
-                            .withDomain( sessionManager.cookieDomain )
-                            .secure( sessionManager.cookieSecure )
-                            .httpOnly( true );
+        validationErrors = plan.validateMethod( arguments, false );
 
-                        context.exchange.setResponseCookie( cookie );
-                    }
+        if( !validationErrors.isEmpty() ) {
+            buildErrorResponse( context.exchange, validationErrors );
+            return;
+        }
+        time = metrics.stage( Stage.VALIDATE_AFTER_UNMARSHAL, time );
+
+        if( context.session != null && SessionManager.isStored( context.session ) )
+            setSessionCookie( context.exchange, context.session );
 
-                    var response = produceResultResponse( context.method, wsMethod, context.method.invoke( instance, paramValues ) );
+        context.deadline.check();
+        if( plan.coalesce != null && isGet( context ) ) {
+            sendCoalesced( context, arguments.values, cacheKey );
+            return;
+        }
+
+        if( !plan.async && context.deadline.isSet() ) {
+            long invoked = time;
+            sendLater( context, invokeTimed( context, arguments.values )
+                .whenComplete( ( r, e ) -> metrics.stage( Stage.INVOKE, invoked ) )
+                .thenApply( plan::response ), cacheKey );
+            return;
+        }
 
-                    Interceptors.after( interceptors, response, context );
+        var result = plan.invoke( arguments.values );
 
-                    response.send( context.exchange );
-                } );
+        if( plan.async && result != null ) {
+            long invoked = time;
+            sendLater( context, within( context.deadline, ( CompletionStage<?> ) result )
+                .whenComplete( ( r, e ) -> metrics.stage( Stage.INVOKE, invoked ) )
+                .thenApply( plan::response ), cacheKey );
+        } else {
+            metrics.stage( Stage.INVOKE, time );
+            send( context, plan.response( result ), cacheKey );
+        }
+    }
+
+    /**
+     * Runs a synchronous method off the request thread, the request is answered with 504 from the scheduler
+     * once the deadline passes. The method is interrupted then as a best-effort cancel, one that does not react
+     * to interrupts keeps its thread until it returns and its result is dropped.
+     * <p>
+     * Such a method also keeps its slot of {@link WsConfig#maxTimedCalls} until it returns, calls over the limit
+     * are answered with 503 rather than piling up threads behind hung ones.
+     */
+    private CompletableFuture<Object> invokeTimed( InvocationContext context, Object[] args ) {
+        if( timedCalls != null && !timedCalls.tryAcquire() ) {
+            if( log.isTraceEnabled() ) log.trace( "{}: rejected {}, {} timed calls running", this, context.plan, maxTimedCalls );
+            return CompletableFuture.failedFuture( WsClientException.stackless( "too many timed calls",
+                StatusCodes.SERVICE_UNAVAILABLE, List.of() ) );
+        }
+
+        var result = new CompletableFuture<Object>();
+        var runner = new AtomicReference<Thread>();
+        try {
+            WsExecutors.timed.execute( () -> {
+                runner.set( Thread.currentThread() );
+                try {
+                    if( !result.isDone() ) result.complete( context.plan.invoke( args ) );
+                } catch( Throwable e ) {
+                    result.completeExceptionally( e );
+                } finally {
+                    runner.set( null );
+                    if( timedCalls != null ) timedCalls.release();
+                }
+            } );
+        } catch( RejectedExecutionException e ) {
+            if( timedCalls != null ) timedCalls.release();
+            throw e;
+        }
+        var timeout = WsExecutors.scheduler.schedule( () -> {
+            if( !result.completeExceptionally( new TimeoutException( "deadline exceeded" ) ) ) return;
+            var thread = runner.get();
+            if( thread != null ) thread.interrupt();
+        }, context.deadline.remaining(), TimeUnit.MILLISECONDS );
+        result.whenComplete( ( r, e ) -> timeout.cancel( false ) );
+        return result;
+    }
+
+    private static <T> CompletionStage<T> within( Deadline deadline, CompletionStage<T> stage ) {
+        if( !deadline.isSet() ) return stage;
+        return stage.toCompletableFuture().copy().orTimeout( deadline.remaining(), TimeUnit.MILLISECONDS );
+    }
+
+    private static boolean isGet( InvocationContext context ) {
+        return context.exchange.getRequestMethod() == HttpServerExchange.HttpMethod.GET;
+    }
+
+    /**
+     * @return null if the response is not to be cached
+     */
+    private String cacheKey( InvocationContext context ) {
+        var cache = context.plan.cache;
+        if( cache == null || responseCache == null || !isGet( context ) ) return null;
+
+        return requestKey( context, cache.keyBy(), context.plan.cacheRealm );
+    }
+
+    /**
+     * Joins the invocation in flight for the same key or makes one, its response is shared as serialized bytes.
+     * The invocation is bounded by the deadline of the request that made it, the ones joining it wait no longer
+     * than their own deadline.
+     */
+    private void sendCoalesced( InvocationContext context, Object[] paramValues, String cacheKey ) {
+        var plan = context.plan;
+        var flight = flights.computeIfAbsent( plan, p -> new SingleFlight<>() )
+            .call( requestKey( context, plan.coalesce.keyBy(), plan.coalesceRealm ), () -> {
+                CompletionStage<?> invoked;
+                if( !plan.async && context.deadline.isSet() ) invoked = invokeTimed( context, paramValues );
+                else {
+                    var result = plan.invoke( paramValues );
+                    invoked = plan.async && result != null
+                        ? within( context.deadline, ( CompletionStage<?> ) result )
+                        : CompletableFuture.completedFuture( result );
+                }
+                return invoked.thenApply( result -> BufferedResponse.of( plan.response( result ), etag ) );
+            } );
+
+        if( flight.isDone() ) send( context, flight.join().response(), cacheKey );
+        else sendLater( context, flight.copy()
+            .orTimeout( Math.min( plan.coalesce.timeout(), context.deadline.remaining() ), TimeUnit.MILLISECONDS )
+            .thenApply( BufferedResponse::response ), cacheKey );
+    }
+
+    /**
+     * @param realm index of the realm parameter, -1 if not keyed by realm
+     */
+    private static String requestKey( InvocationContext context, WsCache.KeyBy[] keyBys, int realm ) {
+        var key = new StringBuilder();
+        for( var keyBy : keyBys ) {
+            if( key.length() > 0 ) key.append( '\n' );
+            switch( keyBy ) {
+                case PATH -> key.append( context.exchange.getRelativePath() );
+                case QUERY -> key.append( context.exchange.exchange.getQueryString() );
+                case USER -> {
+                    var authorization = context.exchange.getRequestHeader( AUTHORIZATION_STRING );
+                    if( authorization == null ) authorization = context.exchange.getRequestCookieValue( AUTHORIZATION_STRING );
+                    if( authorization != null ) key.append( authorization );
+                    else if( context.session != null && SessionManager.isStored( context.session ) ) key.append( context.session.id );
+                }
+                case REALM -> key.append( context.unparsedParameter( realm ) );
+            }
+        }
+        for( var index : context.plan.keyParameters ) {
+            var value = context.unparsedParameter( index );
+            key.append( '\n' ).append( context.plan.parameters[index].parameter.name() ).append( '=' )
+                .append( value instanceof Session session ? session.id : String.valueOf( value ) );
+        }
+        var codec = WsCodecs.negotiate( context.exchange.getRequestHeader( ACCEPT_STRING ) );
+        if( codec != WsCodecs.JSON ) key.append( '\n' ).append( codec.contentType() );
+        return key.toString();
+    }
+
+    /**
+     * @param cacheKey null if the response is not to be cached
+     */
+    @SuppressWarnings( "checkstyle:ParameterAssignment" )
+    private void send( InvocationContext context, Response response, String cacheKey ) {
+        long start = System.nanoTime();
+        var exchange = context.exchange;
+        if( !response.raw && response.isJson() ) {
+            var codec = WsCodecs.negotiate( exchange.getRequestHeader( ACCEPT_STRING ) );
+            if( codec != WsCodecs.JSON ) response.withCodec( codec ).withHeader( VARY_STRING, ACCEPT_STRING );
+        }
+
+        boolean conditional = response.code == Http.StatusCode.OK && isGet( context );
+
+        if( conditional && !response.notModified( exchange ) ) {
+            boolean cacheable = cacheKey != null && response.cookies.isEmpty();
+            if( cacheable || ( etag && response.etag() == null && !response.streamed() ) ) {
+                var buffered = BufferedResponse.of( response, etag );
+                if( cacheable ) responseCache.put( context.plan.cacheRegion, cacheKey, buffered, context.plan.cache.ttl() );
+                response = buffered.response();
+            }
+        }
+        if( conditional && response.notModified( exchange ) ) response = response.toNotModified();
+        else response = compress( context, response );
+
+        long interceptorsStart = System.nanoTime();
+        Interceptors.after( interceptors, response, context );
+        long interceptorsEnd = context.plan.metrics().stage( Stage.INTERCEPTORS_AFTER, interceptorsStart );
+
+        response.send( context.exchange );
+        context.plan.metrics().record( Stage.SEND, interceptorsStart - start + System.nanoTime() - interceptorsEnd );
+    }
+
+    /**
+     * Gzips the serialized body if the method policy allows it and the client accepts it.
+     * A body coming from a {@link BufferedResponse} is compressed once for all the requests it serves.
+     * A streamed body is gzipped while it is written, whatever its size: it is never buffered to find out.
+     */
+    private Response compress( InvocationContext context, Response response ) {
+        var policy = context.plan.compression;
+        if( policy == null || response.headers.containsKey( CONTENT_ENCODING_STRING )
+            || !policy.compressible( response.contentType )
+            || !CompressionPolicy.acceptsGzip( context.exchange.getRequestHeader( ACCEPT_ENCODING_STRING ) ) )
+            return response;
+
+        if( response.buffered == null && response.streamed() )
+            return gzipped( varyByEncoding( response.gzipStreamed( policy.level ) ) );
+
+        var buffered = response.buffered != null ? response.buffered : BufferedResponse.of( response, etag );
+        var compressed = buffered.response();
+        compressed.headers.putAll( response.headers );
+        varyByEncoding( compressed );
+        if( buffered.body == null || buffered.body.length < policy.minSize ) return compressed;
+
+        return gzipped( compressed.withBody( buffered.gzip( policy.level ), true ) );
+    }
+
+    private static Response varyByEncoding( Response response ) {
+        return response.withHeader( VARY_STRING, response.headers.containsKey( VARY_STRING )
+            ? response.headers.get( VARY_STRING ) + ", " + ACCEPT_ENCODING_STRING
+            : ACCEPT_ENCODING_STRING );
+    }
+
+    private static Response gzipped( Response response ) {
+        response.withHeader( CONTENT_ENCODING_STRING, GZIP.toString() );
+        var etag = response.etag();
+        if( etag != null && etag.endsWith( "\"" ) )
+            response.withHeader( ETAG_STRING, etag.substring( 0, etag.length() - 1 ) + Response.GZIP_ETAG_SUFFIX + '"' );
+        return response;
+    }
+
+    /**
+     * The exchange is dispatched so that it outlives the worker call, the response is sent by whatever thread
+     * completes the stage.
+     */
+    private void sendLater( InvocationContext context, CompletionStage<Response> stage, String cacheKey ) {
+        var exchange = context.exchange;
+        exchange.exchange.dispatch( SameThreadExecutor.INSTANCE, () -> stage.whenComplete( ( response, e ) -> {
+            try {
+                if( e != null ) wsError( exchange, e );
+                else send( context, response, cacheKey );
+            } catch( Throwable t ) {
+                wsError( exchange, t );
+            } finally {
+                exchange.endExchange();
+            }
+        } ) );
+    }
+
+    /**
+     * Sessions created lazily get the cookie when they are stored, which can be after this point.
+     */
+    private void setSessionCookie( HttpServerExchange exchange, Session session ) {
+        if( containsSessionCookie( exchange.responseCookies() ) ) return;
+
+        exchange.setResponseCookie( new oap.http.Cookie( SessionManager.COOKIE_ID, session.id )
+            .withPath( sessionManager.cookiePath )
+            .withExpires( DateTime.now().plus( sessionManager.cookieExpiration ) )
+            .withDomain( sessionManager.cookieDomain )
+            .secure( sessionManager.cookieSecure )
+            .httpOnly( true ) );
     }
 
     private boolean containsSessionCookie( Iterable<Cookie> cookies ) {
@@ -188,26 +573,6 @@ public class WebService implements HttpHandler {
         return false;
     }
 
-    private Response produceResultResponse( Reflection.Method method, Optional<WsMethod> wsMethod, Object result ) {
-        boolean isRaw = wsMethod.map( WsMethod::raw ).orElse( false );
-        var produces = wsMethod.map( WsMethod::produces )
-            .orElse( Http.ContentType.APPLICATION_JSON );
-
-        if( method.isVoid() ) return Response.noContent();
-        else if( result instanceof Response response ) return response;
-        else if( result instanceof Optional<?> optResult ) return optResult.isEmpty()
-            ? Response.notFound()
-            : Response.ok().withBody( optResult.get(), isRaw ).withContentType( produces );
-        else if( result instanceof Result<?, ?> resultResult ) if( resultResult.isSuccess() )
-            return Response.ok().withBody( resultResult.successValue, isRaw ).withContentType( produces );
-        else return new Response( Http.StatusCode.INTERNAL_SERVER_ERROR, "" )
-                .withBody( resultResult.failureValue, false )
-                .withContentType( Http.ContentType.APPLICATION_JSON );
-        else if( result instanceof java.util.stream.Stream<?> stream )
-            return Response.ok().withBody( stream, isRaw ).withContentType( produces );
-        else return Response.ok().withBody( result, isRaw ).withContentType( produces );
-    }
-
     @Override
     public String toString() {
         return instance.getClass().getName();
@@ -31,25 +31,46 @@ import oap.application.module.ServiceExt;
 import oap.http.server.nio.HttpHandler;
 import oap.http.server.nio.NioHttpServer;
 import oap.util.Lists;
+import oap.util.Pair;
 import oap.ws.interceptor.Interceptor;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static oap.util.Pair.__;
 
 @Slf4j
 public class WebServices {
     public final LinkedHashMap<String, Object> services = new LinkedHashMap<>();
     private final NioHttpServer server;
     private final SessionManager sessionManager;
+    private final WsResponseCache responseCache;
     private final Kernel kernel;
+    private final List<ExecutorService> executors = new ArrayList<>();
+    /**
+     * Bound web service handlers by port and context, for {@link #route(HttpHandler, String)}.
+     */
+    private final Map<Optional<String>, Map<String, HttpHandler>> routes = new ConcurrentHashMap<>();
+    private final Map<HttpHandler, Optional<String>> handlerPorts = new IdentityHashMap<>();
     private List<ServiceExt<WsConfig>> wsConfigServices;
     private List<ServiceExt<WsConfig>> wsConfigHandlers;
 
     public WebServices( Kernel kernel, NioHttpServer server, SessionManager sessionManager ) {
+        this( kernel, server, sessionManager, new WsResponseCache( WsResponseCache.DEFAULT_MAX_SIZE ) );
+    }
+
+    public WebServices( Kernel kernel, NioHttpServer server, SessionManager sessionManager, WsResponseCache responseCache ) {
         this.kernel = kernel;
         this.server = server;
         this.sessionManager = sessionManager;
+        this.responseCache = responseCache;
     }
 
     public void start() {
@@ -74,16 +95,19 @@ public class WebServices {
             }
 
             for( var path : config.ext.path ) {
-                bind( path, config.getInstance(),
-                    config.ext.sessionAware, sessionManager, interceptors, config.ext.compression, config.ext.port, config.ext.portType );
+                bind( path, config.getInstance(), sessionManager, interceptors, config.ext );
             }
         }
 
         for( var config : wsConfigHandlers ) {
             log.trace( "handler = {}", config );
 
+            var handler = ( HttpHandler ) config.getInstance();
+            synchronized( handlerPorts ) {
+                handlerPorts.put( handler, config.ext.port );
+            }
             for( var path : config.ext.path ) {
-                bind( path, ( HttpHandler ) config.getInstance(), config.ext.compression, config.ext.port, config.ext.portType );
+                bind( path, handler, config.ext.compression, config.ext.port, config.ext.portType );
             }
         }
     }
@@ -91,6 +115,42 @@ public class WebServices {
     public void stop() {
         wsConfigServices = null;
         wsConfigHandlers = null;
+
+        executors.forEach( ExecutorService::shutdown );
+        executors.clear();
+        routes.clear();
+        synchronized( handlerPorts ) {
+            handlerPorts.clear();
+        }
+    }
+
+    /**
+     * The web service a request for the path would reach through the port the handler is bound to,
+     * the longest matching context wins.
+     *
+     * @return context and handler, null if the path does not belong to a web service
+     */
+    public Pair<String, HttpHandler> route( HttpHandler from, String path ) {
+        Optional<String> port;
+        synchronized( handlerPorts ) {
+            port = handlerPorts.getOrDefault( from, Optional.empty() );
+        }
+        var contexts = routes.get( port );
+        if( contexts == null ) return null;
+
+        var context = path;
+        while( true ) {
+            var handler = contexts.get( context.isEmpty() ? "/" : context );
+            if( handler != null ) return __( context, handler );
+            if( context.isEmpty() ) return null;
+            context = context.substring( 0, context.lastIndexOf( '/' ) );
+        }
+    }
+
+    private void route( String context, HttpHandler handler, Optional<String> port ) {
+        var normalized = context.startsWith( "/" ) ? context : "/" + context;
+        if( normalized.length() > 1 && normalized.endsWith( "/" ) ) normalized = normalized.substring( 0, normalized.length() - 1 );
+        routes.computeIfAbsent( port, p -> new ConcurrentHashMap<>() ).put( normalized, handler );
     }
 
     public void bind( String context, Object service, boolean sessionAware,
@@ -98,7 +158,36 @@ public class WebServices {
                       Optional<String> port, List<NioHttpServer.PortType> portType ) {
 
         services.put( context, service );
-        bind( context, new WebService( service, sessionAware, sessionManager, interceptors, compressionSupport ), compressionSupport, port, portType );
+        var handler = new WebService( service, sessionAware, sessionManager, interceptors, compressionSupport );
+        route( context, handler, port );
+        bind( context, handler, compressionSupport, port, portType );
+    }
+
+    public void bind( String context, Object service, SessionManager sessionManager, List<Interceptor> interceptors, WsConfig config ) {
+        services.put( context, service );
+        HttpHandler handler = new WebService( service, sessionManager, interceptors, config, responseCache );
+        var executor = executor( context, config );
+        if( executor.isPresent() ) handler = WsExecutors.dispatching( handler, executor.get(), config.maxConcurrency );
+        route( context, handler, config.port );
+        bind( context, handler, config.compression && config.compressionPolicy == null, config.port, config.portType );
+    }
+
+    private Optional<Executor> executor( String context, WsConfig config ) {
+        switch( config.executor ) {
+            case WsExecutors.WORKER:
+                return Optional.empty();
+            case WsExecutors.VIRTUAL:
+                var virtual = WsExecutors.virtual( "ws" + context.replace( '/', '-' ) );
+                executors.add( virtual );
+                return Optional.of( virtual );
+            case WsExecutors.PLATFORM:
+                var platform = WsExecutors.platform( "ws" + context.replace( '/', '-' ) );
+                executors.add( platform );
+                return Optional.of( platform );
+            default:
+                return Optional.of( kernel.<Executor>service( config.executor )
+                    .orElseThrow( () -> new RuntimeException( "executor " + config.executor + " not found" ) ) );
+        }
     }
 
     @SuppressWarnings( "checkstyle:ParameterAssignment" )
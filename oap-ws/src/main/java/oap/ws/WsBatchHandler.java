@@ -0,0 +1,478 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import io.undertow.io.BlockingReceiverImpl;
+import io.undertow.io.BlockingSenderImpl;
+import io.undertow.io.Receiver;
+import io.undertow.io.Sender;
+import io.undertow.server.BlockingHttpExchange;
+import io.undertow.server.Connectors;
+import io.undertow.server.handlers.Cookie;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import oap.http.server.nio.HttpHandler;
+import oap.http.server.nio.HttpServerExchange;
+import oap.json.Binder;
+import oap.json.JsonException;
+import oap.util.Pair;
+import org.joda.time.DateTime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static io.undertow.util.Headers.ACCEPT_LANGUAGE_STRING;
+import static io.undertow.util.Headers.AUTHORIZATION_STRING;
+import static io.undertow.util.Headers.CONTENT_LENGTH_STRING;
+import static io.undertow.util.Headers.COOKIE_STRING;
+import static io.undertow.util.Headers.FORWARDED_STRING;
+import static io.undertow.util.Headers.HOST_STRING;
+import static io.undertow.util.Headers.SET_COOKIE_STRING;
+import static io.undertow.util.Headers.TRANSFER_ENCODING_STRING;
+import static io.undertow.util.Headers.USER_AGENT_STRING;
+import static io.undertow.util.Headers.X_FORWARDED_FOR_STRING;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static oap.http.Http.ContentType.APPLICATION_JSON;
+import static oap.http.Http.Headers.CONTENT_TYPE;
+
+/**
+ * Executes a JSON array of sub-requests in one round trip and responds with an array of their results, in order.
+ * <p>
+ * The session is resolved once and shared by all sub-requests, so authentication cached in it is done once too.
+ * Every sub-request goes through the regular web service of its path, interceptors and validators included.
+ * Consecutive GET sub-requests run in parallel, any other method waits for the sub-requests before it
+ * and blocks the ones after it. At most maxInFlight sub-requests of all batches run at once, the rest wait
+ * for them without holding a thread, and the batch is answered once the last of its sub-requests completes.
+ * <pre>
+ * batch {
+ *   implementation = oap.ws.WsBatchHandler
+ *   parameters {
+ *     webServices = modules.oap-ws.oap-ws-webservices
+ *     sessionManager = modules.oap-ws.session-manager
+ *   }
+ *   ws-handler.path = batch
+ * }
+ * </pre>
+ * Sub-requests are dispatched in process to the web service bound to their path on the port of the batch, paths
+ * outside of web services, this handler included, are rejected. Each one gets an in-memory exchange with the client
+ * address, the host, the cookies and the credentials of the batch. A sub-request cannot set those headers itself.
+ */
+@Slf4j
+public class WsBatchHandler implements HttpHandler {
+    /**
+     * The session of the batch, web services take it instead of looking one up.
+     */
+    static final AttachmentKey<Session> SESSION = AttachmentKey.create( Session.class );
+
+    private static final String[] FORWARDED_HEADERS = {
+        HOST_STRING, COOKIE_STRING, AUTHORIZATION_STRING, ACCEPT_LANGUAGE_STRING, USER_AGENT_STRING, X_FORWARDED_FOR_STRING, Deadline.HEADER };
+    private static final Set<String> FORBIDDEN_HEADERS = Set.of(
+        HOST_STRING.toLowerCase( Locale.ROOT ), COOKIE_STRING.toLowerCase( Locale.ROOT ),
+        AUTHORIZATION_STRING.toLowerCase( Locale.ROOT ), FORWARDED_STRING.toLowerCase( Locale.ROOT ),
+        CONTENT_LENGTH_STRING.toLowerCase( Locale.ROOT ), TRANSFER_ENCODING_STRING.toLowerCase( Locale.ROOT ) );
+
+    private final WebServices webServices;
+    private final SessionManager sessionManager;
+    private final int maxRequests;
+    private final long timeout;
+    private final InFlight inFlight;
+
+    /**
+     * @param maxRequests sub-requests per batch
+     * @param timeout     ms, per sub-request
+     * @param maxInFlight sub-requests of all batches running at once
+     */
+    public WsBatchHandler( WebServices webServices, SessionManager sessionManager, int maxRequests, long timeout, int maxInFlight ) {
+        this.webServices = webServices;
+        this.sessionManager = sessionManager;
+        this.maxRequests = maxRequests;
+        this.timeout = timeout;
+        this.inFlight = new InFlight( maxInFlight );
+    }
+
+    public WsBatchHandler( WebServices webServices, SessionManager sessionManager, int maxRequests, long timeout ) {
+        this( webServices, sessionManager, maxRequests, timeout, 16 );
+    }
+
+    public WsBatchHandler( WebServices webServices, SessionManager sessionManager ) {
+        this( webServices, sessionManager, 64, 30000 );
+    }
+
+    @Override
+    public void handleRequest( HttpServerExchange exchange ) throws Exception {
+        Request[] requests;
+        try {
+            requests = Binder.json.unmarshal( Request[].class, new String( exchange.readBody(), UTF_8 ) );
+        } catch( JsonException e ) {
+            log.debug( "malformed batch: {}", e.getMessage() );
+            requests = null;
+        }
+        if( requests == null ) {
+            exchange.setStatusCodeReasonPhrase( StatusCodes.BAD_REQUEST, "a json array of requests is expected" );
+            exchange.endExchange();
+            return;
+        }
+        if( requests.length > maxRequests ) {
+            exchange.setStatusCodeReasonPhrase( StatusCodes.REQUEST_ENTITY_TOO_LARGE, "more than " + maxRequests + " requests in a batch" );
+            exchange.endExchange();
+            return;
+        }
+
+        var session = sessionManager.lookup( exchange.getRequestCookieValue( SessionManager.COOKIE_ID ),
+            created -> setSessionCookie( exchange, created ) );
+        exchange.exchange.addExchangeCompleteListener( ( undertowExchange, next ) -> {
+            try {
+                sessionManager.release( session );
+            } finally {
+                next.proceed();
+            }
+        } );
+
+        var headers = new HeaderMap();
+        for( var name : FORWARDED_HEADERS ) {
+            var value = exchange.getRequestHeader( name );
+            if( value != null ) headers.put( new HttpString( name ), value );
+        }
+
+        var results = new ArrayList<CompletableFuture<Result>>( requests.length );
+        var pending = new ArrayList<CompletableFuture<?>>();
+        CompletableFuture<?> barrier = CompletableFuture.completedFuture( null );
+        for( var request : requests ) {
+            CompletableFuture<Result> result;
+            var invalid = request.invalid();
+            var route = invalid == null ? webServices.route( this, request.path ) : null;
+            if( invalid != null || route == null )
+                result = CompletableFuture.completedFuture( Result.error( StatusCodes.BAD_REQUEST,
+                    invalid != null ? invalid : "no web service at " + request.path ) );
+            else if( request.isGet() ) {
+                result = barrier.thenCompose( v -> dispatch( exchange, session, headers, request, route ) );
+                pending.add( result );
+            } else {
+                pending.add( barrier );
+                var preceding = CompletableFuture.allOf( pending.toArray( new CompletableFuture<?>[0] ) );
+                result = preceding.thenCompose( v -> dispatch( exchange, session, headers, request, route ) );
+                barrier = result;
+                pending.clear();
+            }
+            results.add( result );
+        }
+
+        var all = CompletableFuture.allOf( results.toArray( new CompletableFuture<?>[0] ) );
+        exchange.exchange.dispatch( SameThreadExecutor.INSTANCE, () -> all.whenComplete( ( v, e ) -> {
+            try {
+                if( e != null ) {
+                    log.error( "batch failed: {}", e.toString(), e );
+                    exchange.setStatusCodeReasonPhrase( StatusCodes.INTERNAL_SERVER_ERROR, e.getMessage() );
+                    return;
+                }
+                var responses = new ArrayList<Result>( results.size() );
+                for( var result : results ) {
+                    var response = result.join();
+                    response.cookies.forEach( exchange.exchange::setResponseCookie );
+                    response.setCookies.forEach( c -> exchange.exchange.getResponseHeaders().add( Headers.SET_COOKIE, c ) );
+                    responses.add( response );
+                }
+                exchange.responseJson( responses );
+            } finally {
+                exchange.endExchange();
+            }
+        } ) );
+    }
+
+    private CompletableFuture<Result> dispatch( HttpServerExchange exchange, Session session, HeaderMap headers,
+                                                Request request, Pair<String, HttpHandler> route ) {
+        return inFlight.submit( () -> {
+            var result = new CompletableFuture<Result>();
+            var sub = subExchange( exchange.exchange, session, headers, request, route._1, result );
+            exchange.exchange.getConnection().getWorker().execute( () -> Connectors.executeRootHandler(
+                undertowExchange -> route._2.handleRequest( new HttpServerExchange( undertowExchange, exchange.id ) ), sub ) );
+            return result.orTimeout( timeout, MILLISECONDS );
+        } ).exceptionally( e -> {
+            var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.debug( "{} {}: {}", request.method, request.path, cause.toString() );
+            return cause instanceof TimeoutException
+                ? Result.error( StatusCodes.GATEWAY_TIMEOUT, StatusCodes.GATEWAY_TIMEOUT_STRING )
+                : Result.error( StatusCodes.INTERNAL_SERVER_ERROR, cause.getMessage() );
+        } );
+    }
+
+    /**
+     * A connectionless exchange reading its body from and writing its response to memory. Ending it completes
+     * the result, the completion listeners of the web service run as for any other exchange.
+     */
+    private static io.undertow.server.HttpServerExchange subExchange( io.undertow.server.HttpServerExchange parent, Session session,
+                                                                      HeaderMap headers, Request request, String context,
+                                                                      CompletableFuture<Result> result ) {
+        var requestHeaders = new HeaderMap();
+        headers.forEach( values -> requestHeaders.putAll( values.getHeaderName(), values ) );
+        request.headers.forEach( ( name, value ) -> requestHeaders.put( new HttpString( name ), value ) );
+
+        byte[] body = request.body();
+        if( body.length > 0 ) {
+            if( !request.headers.containsKey( CONTENT_TYPE ) ) requestHeaders.put( new HttpString( CONTENT_TYPE ), APPLICATION_JSON );
+            requestHeaders.put( Headers.CONTENT_LENGTH, body.length );
+        }
+
+        var sub = new io.undertow.server.HttpServerExchange( null, requestHeaders, new HeaderMap(), -1 );
+        sub.setRequestMethod( new HttpString( request.method.toUpperCase( Locale.ROOT ) ) );
+        sub.setRequestScheme( parent.getRequestScheme() );
+        sub.setProtocol( parent.getProtocol() );
+        sub.setSourceAddress( parent.getSourceAddress() );
+        sub.setDestinationAddress( parent.getDestinationAddress() );
+        sub.setRequestURI( request.path, false );
+        sub.setRequestPath( request.path );
+        sub.setResolvedPath( context );
+        sub.setRelativePath( request.path.substring( context.length() ) );
+        var queryString = request.queryString();
+        sub.setQueryString( queryString.isEmpty() ? "" : queryString.substring( 1 ) );
+        request.queryValues().forEach( p -> sub.addQueryParam( p._1, p._2 ) );
+        sub.putAttachment( SESSION, session );
+
+        var out = new ByteArrayOutputStream();
+        var in = new ByteArrayInputStream( body );
+        sub.startBlocking( new BlockingHttpExchange() {
+            private final Sender sender = new BlockingSenderImpl( sub, out );
+            private final Receiver receiver = new BlockingReceiverImpl( sub, in );
+
+            @Override
+            public InputStream getInputStream() {
+                return in;
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                return out;
+            }
+
+            @Override
+            public Sender getSender() {
+                return sender;
+            }
+
+            @Override
+            public Receiver getReceiver() {
+                return receiver;
+            }
+
+            @Override
+            public void close() {}
+        } );
+        sub.addDefaultResponseListener( ended -> {
+            Connectors.terminateRequest( ended );
+            Connectors.terminateResponse( ended );
+            result.complete( Result.of( ended, out.toByteArray() ) );
+            return true;
+        } );
+        return sub;
+    }
+
+    /**
+     * For sessions created by a sub-request, see {@link SessionManager#lookup(String, java.util.function.Consumer)}.
+     */
+    private void setSessionCookie( HttpServerExchange exchange, Session session ) {
+        exchange.setResponseCookie( new oap.http.Cookie( SessionManager.COOKIE_ID, session.id )
+            .withPath( sessionManager.cookiePath )
+            .withExpires( DateTime.now().plus( sessionManager.cookieExpiration ) )
+            .withDomain( sessionManager.cookieDomain )
+            .secure( sessionManager.cookieSecure )
+            .httpOnly( true ) );
+    }
+
+    /**
+     * Sub-requests waiting for a slot are queued, a completed one starts the next.
+     */
+    private static final class InFlight {
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private int available;
+
+        private InFlight( int max ) {
+            this.available = max;
+        }
+
+        <T> CompletableFuture<T> submit( Supplier<CompletableFuture<T>> task ) {
+            var result = new CompletableFuture<T>();
+            Runnable start = () -> {
+                CompletableFuture<T> started;
+                try {
+                    started = task.get();
+                } catch( Throwable e ) {
+                    release();
+                    result.completeExceptionally( e );
+                    return;
+                }
+                started.whenComplete( ( r, e ) -> {
+                    release();
+                    if( e != null ) result.completeExceptionally( e );
+                    else result.complete( r );
+                } );
+            };
+
+            boolean now;
+            synchronized( this ) {
+                now = available > 0;
+                if( now ) available--;
+                else waiting.add( start );
+            }
+            if( now ) start.run();
+            return result;
+        }
+
+        private void release() {
+            Runnable next;
+            synchronized( this ) {
+                next = waiting.poll();
+                if( next == null ) available++;
+            }
+            if( next != null ) next.run();
+        }
+    }
+
+    @ToString
+    public static class Request {
+        public String method = "GET";
+        public String path;
+        /**
+         * Collection values become repeated parameters.
+         */
+        public Map<String, Object> query = new LinkedHashMap<>();
+        public Map<String, String> headers = new LinkedHashMap<>();
+        /**
+         * Sent as is if it is a string, as json otherwise.
+         */
+        public Object body;
+
+        boolean isGet() {
+            return "GET".equalsIgnoreCase( method );
+        }
+
+        /**
+         * @return why the request cannot be dispatched, null if it can
+         */
+        String invalid() {
+            if( path == null || !path.startsWith( "/" ) || path.contains( "//" ) || path.contains( "?" ) || path.contains( "#" ) )
+                return "invalid path " + path;
+            for( var segment : path.split( "/" ) )
+                if( segment.equals( "." ) || segment.equals( ".." ) ) return "invalid path " + path;
+            try {
+                HttpServerExchange.HttpMethod.valueOf( method.toUpperCase( Locale.ROOT ) );
+            } catch( IllegalArgumentException | NullPointerException e ) {
+                return "invalid method " + method;
+            }
+            for( var name : headers.keySet() ) {
+                var lower = name.toLowerCase( Locale.ROOT );
+                if( FORBIDDEN_HEADERS.contains( lower ) || lower.startsWith( "x-forwarded-" ) )
+                    return "header " + name + " is taken from the batch";
+            }
+            return null;
+        }
+
+        List<Pair<String, String>> queryValues() {
+            var values = new ArrayList<Pair<String, String>>();
+            query.forEach( ( name, value ) -> {
+                for( var v : value instanceof Collection<?> collection ? collection : List.of( value ) )
+                    values.add( Pair.__( name, String.valueOf( v ) ) );
+            } );
+            return values;
+        }
+
+        String queryString() {
+            var sb = new StringBuilder();
+            for( var p : queryValues() )
+                sb.append( sb.length() == 0 ? '?' : '&' )
+                    .append( URLEncoder.encode( p._1, UTF_8 ) )
+                    .append( '=' )
+                    .append( URLEncoder.encode( p._2, UTF_8 ) );
+            return sb.toString();
+        }
+
+        byte[] body() {
+            if( body == null ) return new byte[0];
+            return ( body instanceof String text ? text : Binder.json.marshal( body ) ).getBytes( UTF_8 );
+        }
+    }
+
+    @ToString
+    public static class Result {
+        public int code;
+        public String reason;
+        public String contentType;
+        /**
+         * Inlined as json if the response is json, a json string otherwise.
+         */
+        @JsonRawValue
+        public String body;
+        @JsonIgnore
+        List<Cookie> cookies = List.of();
+        @JsonIgnore
+        List<String> setCookies = List.of();
+
+        static Result of( io.undertow.server.HttpServerExchange exchange, byte[] content ) {
+            var result = new Result();
+            result.code = exchange.getStatusCode();
+            if( result.code >= StatusCodes.BAD_REQUEST ) result.reason = exchange.getReasonPhrase();
+            result.contentType = exchange.getResponseHeaders().getFirst( CONTENT_TYPE );
+            var cookies = new ArrayList<Cookie>();
+            exchange.responseCookies().forEach( cookies::add );
+            result.cookies = cookies;
+            var setCookies = exchange.getResponseHeaders().get( SET_COOKIE_STRING );
+            if( setCookies != null ) result.setCookies = new ArrayList<>( setCookies );
+            var body = new String( content, UTF_8 );
+            if( !body.isEmpty() )
+                result.body = result.contentType != null && result.contentType.contains( "json" ) ? body : Binder.json.marshal( body );
+            return result;
+        }
+
+        static Result error( int code, String reason ) {
+            var result = new Result();
+            result.code = code;
+            result.reason = reason;
+            return result;
+        }
+    }
+}
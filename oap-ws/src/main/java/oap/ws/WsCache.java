@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import oap.util.Strings;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Serialized responses of a GET method are kept in {@link WsResponseCache} and served from there
+ * after the interceptors passed the request. Only 200 responses without cookies are cached.
+ */
+@Target( ElementType.METHOD )
+@Retention( RetentionPolicy.RUNTIME )
+public @interface WsCache {
+    /**
+     * time to live, ms
+     */
+    long ttl() default 60_000;
+
+    /**
+     * parts of the request the key is made of. Parameters the method takes from headers, cookies, the body or the
+     * session are always added, so the key covers every input of the method.
+     */
+    KeyBy[] keyBy() default { KeyBy.PATH, KeyBy.QUERY, KeyBy.USER };
+
+    /**
+     * name used to invalidate entries, {@code <service class>.<method>} by default
+     */
+    String region() default Strings.UNDEFINED;
+
+    /**
+     * name of the parameter holding the realm, as in {@code WsSecurity.realm()}, required by {@link KeyBy#REALM}
+     */
+    String realm() default Strings.UNDEFINED;
+
+    enum KeyBy {
+        PATH,
+        QUERY,
+        /**
+         * Authorization header or cookie, the session when there is none. Requests with neither share the
+         * anonymous entry.
+         */
+        USER,
+        /**
+         * Value of the {@link #realm()} parameter. For keys without PATH or QUERY, such as an entry per realm
+         * and user: a realm in the path or the query is part of those already.
+         */
+        REALM
+    }
+}
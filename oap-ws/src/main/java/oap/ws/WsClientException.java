@@ -54,4 +54,26 @@ public class WsClientException extends WsException {
     public WsClientException( Throwable cause ) {
         this( cause.getMessage(), cause );
     }
+
+    private WsClientException( String message, Throwable cause, int code, List<String> errors ) {
+        super( message, cause, false );
+        this.code = code;
+        this.errors = errors;
+    }
+
+    /**
+     * Without a stack trace: filling it is the most expensive part of answering a malformed request.
+     * For failures caused by the request itself, not by the service.
+     */
+    public static WsClientException stackless( String message, int code, List<String> errors ) {
+        return new WsClientException( message, null, code, errors );
+    }
+
+    public static WsClientException stackless( String message ) {
+        return new WsClientException( message, null, Http.StatusCode.BAD_REQUEST, List.of( message ) );
+    }
+
+    public static WsClientException stackless( String message, Throwable cause ) {
+        return new WsClientException( message, cause, Http.StatusCode.BAD_REQUEST, List.of( message ) );
+    }
 }
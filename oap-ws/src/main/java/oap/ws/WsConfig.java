@@ -27,6 +27,7 @@ import com.fasterxml.jackson.annotation.JsonAlias;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import oap.http.server.nio.NioHttpServer;
+import oap.ws.limit.ConcurrencyLimit;
 
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
@@ -41,6 +42,48 @@ public class WsConfig {
     public LinkedHashSet<String> path = new LinkedHashSet<>();
     public boolean sessionAware;
     public boolean compression = true;
+    /**
+     * when set, responses are compressed by the web service following the policy and {@link WsCompression},
+     * instead of by the http server
+     */
+    public CompressionPolicy compressionPolicy;
     public Optional<String> port = Optional.empty();
     public ArrayList<NioHttpServer.PortType> portType = new ArrayList<>();
+    /**
+     * maximum request body size in bytes, -1 for no limit
+     */
+    public long maxBodySize = -1;
+    /**
+     * where requests are handled: worker - the http server worker pool, virtual - a virtual thread per request,
+     * platform - a pool of platform threads, or the name of an {@link java.util.concurrent.Executor} service.
+     * virtual fails to bind on runtimes without virtual threads, there is no silent fallback.
+     */
+    public String executor = WsExecutors.WORKER;
+    /**
+     * maximum number of requests handled at once by a non-worker executor, -1 for no limit.
+     * Requests over it wait for a completed one without holding a thread.
+     */
+    public int maxConcurrency = -1;
+    /**
+     * GET responses get an ETag hashed from the serialized body, they are buffered instead of streamed.
+     * Without it no body is hashed, responses buffered for {@link WsCache}, {@link WsCoalesce} or compression included.
+     */
+    public boolean etag;
+    /**
+     * ms a method may run before the client gets 504, -1 for no limit, see {@link WsMethod#timeout()}
+     */
+    public long timeout = -1;
+    /**
+     * maximum number of synchronous methods with a timeout running at once, -1 for no limit. Calls over it are
+     * answered with 503. A method that ignores interrupts holds its slot past the timeout, until it returns.
+     */
+    public int maxTimedCalls = 256;
+    /**
+     * admission control, null to admit every request, see {@link WsPriority}
+     */
+    public ConcurrencyLimit concurrencyLimit;
+    /**
+     * request time and size meters publish percentile histograms, a few dozen buckets per method and status
+     */
+    public boolean percentiles;
 }
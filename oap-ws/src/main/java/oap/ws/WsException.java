@@ -35,4 +35,11 @@ public class WsException extends RuntimeException {
     public WsException( Throwable cause ) {
         super( cause );
     }
+
+    /**
+     * @param writableStackTrace false for exceptions that are answered to the client and never logged with a stack
+     */
+    protected WsException( String message, Throwable cause, boolean writableStackTrace ) {
+        super( message, cause, false, writableStackTrace );
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.util.SameThreadExecutor;
+import lombok.extern.slf4j.Slf4j;
+import oap.http.server.nio.HttpHandler;
+import oap.http.server.nio.HttpServerExchange;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Executors a web service can be moved to off the http server worker pool, see {@link WsConfig#executor}.
+ */
+@Slf4j
+public final class WsExecutors {
+    public static final String WORKER = "worker";
+    public static final String VIRTUAL = "virtual";
+    public static final String PLATFORM = "platform";
+
+    /**
+     * Timers of the web services, such as {@link Deadline} timeouts. Tasks have to be short.
+     */
+    static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor( new ThreadFactoryBuilder()
+        .setNameFormat( "ws-scheduler" )
+        .setDaemon( true )
+        .build() );
+
+    private static final MethodHandle newVirtualThreadPerTaskExecutor = virtualThreadPerTaskExecutor();
+
+    /**
+     * Synchronous methods with a {@link Deadline}, off the request thread so that the request is answered in time.
+     * Each web service bounds its calls with {@link WsConfig#maxTimedCalls}.
+     */
+    static final ExecutorService timed = virtualOrPlatform( "ws-timed" );
+
+    private WsExecutors() {
+    }
+
+    private static MethodHandle virtualThreadPerTaskExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic( Executors.class, "newVirtualThreadPerTaskExecutor",
+                MethodType.methodType( ExecutorService.class ) );
+        } catch( NoSuchMethodException | IllegalAccessException e ) {
+            return null;
+        }
+    }
+
+    public static boolean virtualThreadsSupported() {
+        if( newVirtualThreadPerTaskExecutor == null ) return false;
+        try {
+            ( ( ExecutorService ) newVirtualThreadPerTaskExecutor.invokeExact() ).shutdown();
+            return true;
+        } catch( UnsupportedOperationException e ) {
+            return false;
+        } catch( Throwable e ) {
+            throw new WsException( e );
+        }
+    }
+
+    /**
+     * A virtual thread per task.
+     *
+     * @throws WsException if the runtime has no virtual threads, or has them as a disabled preview feature
+     */
+    public static ExecutorService virtual( String name ) {
+        if( newVirtualThreadPerTaskExecutor == null )
+            throw new WsException( name + ": virtual threads are not available in java " + Runtime.version().feature()
+                + ", use the " + PLATFORM + " executor" );
+        try {
+            return ( ExecutorService ) newVirtualThreadPerTaskExecutor.invokeExact();
+        } catch( UnsupportedOperationException e ) {
+            throw new WsException( name + ": virtual threads are a preview feature in java " + Runtime.version().feature()
+                + ", use the " + PLATFORM + " executor", e );
+        } catch( Throwable e ) {
+            throw new WsException( e );
+        }
+    }
+
+    /**
+     * A platform thread per running task, idle threads are reused. The pool is unbounded, bound the web service
+     * with {@link WsConfig#maxConcurrency}.
+     */
+    public static ExecutorService platform( String name ) {
+        return Executors.newCachedThreadPool( new ThreadFactoryBuilder()
+            .setNameFormat( name + "-%d" )
+            .setDaemon( true )
+            .build() );
+    }
+
+    /**
+     * {@link #virtual(String)} if the runtime has virtual threads, {@link #platform(String)} otherwise.
+     * For executors of the library itself, web services choose theirs with {@link WsConfig#executor}.
+     */
+    public static ExecutorService virtualOrPlatform( String name ) {
+        return virtualThreadsSupported() ? virtual( name ) : platform( name );
+    }
+
+    /**
+     * Hands requests over to the executor, at most maxConcurrency of them are handled at once. The rest wait in a
+     * queue, holding no thread, until a handled exchange completes. The exchange is ended when the handler returns
+     * unless it was dispatched again.
+     *
+     * @param maxConcurrency -1 for no limit
+     */
+    public static HttpHandler dispatching( HttpHandler handler, Executor executor, int maxConcurrency ) {
+        if( maxConcurrency < 0 )
+            return exchange -> exchange.exchange.dispatch( executor, undertowExchange -> handler.handleRequest( exchange ) );
+
+        return new LimitedDispatcher( handler, executor, maxConcurrency );
+    }
+
+    private static final class LimitedDispatcher implements HttpHandler {
+        private final HttpHandler handler;
+        private final Executor executor;
+        private final int maxConcurrency;
+        private final ArrayDeque<HttpServerExchange> waiting = new ArrayDeque<>();
+        private final ExchangeCompletionListener release = ( undertowExchange, next ) -> {
+            try {
+                release();
+            } finally {
+                next.proceed();
+            }
+        };
+        private int running;
+
+        private LimitedDispatcher( HttpHandler handler, Executor executor, int maxConcurrency ) {
+            this.handler = handler;
+            this.executor = executor;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        /**
+         * The exchange is suspended first: once the io thread has left the handler, a permit taken here can be
+         * passed on to the executor, a queued exchange is picked up by whoever releases the next permit.
+         */
+        @Override
+        public void handleRequest( HttpServerExchange exchange ) {
+            exchange.exchange.dispatch( SameThreadExecutor.INSTANCE, () -> {
+                synchronized( this ) {
+                    if( running >= maxConcurrency ) {
+                        waiting.add( exchange );
+                        return;
+                    }
+                    running++;
+                }
+                dispatch( exchange );
+            } );
+        }
+
+        private void dispatch( HttpServerExchange exchange ) {
+            exchange.exchange.addExchangeCompleteListener( release );
+            exchange.exchange.dispatch( executor, undertowExchange -> handler.handleRequest( exchange ) );
+        }
+
+        private void release() {
+            HttpServerExchange next;
+            synchronized( this ) {
+                next = waiting.poll();
+                if( next == null ) running--;
+            }
+            if( next != null ) dispatch( next );
+        }
+    }
+}
@@ -45,4 +45,11 @@ public @interface WsMethod {
     String description() default Strings.UNDEFINED;
 
     HttpServerExchange.HttpMethod[] method() default { HttpServerExchange.HttpMethod.GET, HttpServerExchange.HttpMethod.POST };
+
+    /**
+     * ms the method may run before the client gets 504, -1 for the {@link WsConfig#timeout} of the service
+     *
+     * @see Deadline
+     */
+    long timeout() default -1;
 }
@@ -0,0 +1,339 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import lombok.SneakyThrows;
+import oap.http.Http;
+import oap.http.server.nio.HttpServerExchange;
+import oap.reflect.Reflection;
+import oap.util.Result;
+import oap.ws.validate.ValidationErrors;
+import oap.ws.validate.Validators;
+
+import javax.annotation.concurrent.Immutable;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import static oap.util.Strings.isUndefined;
+
+/**
+ * Everything {@link WebService} needs to invoke a method, resolved once when the web service is bound:
+ * parameter extractors, validators, produces, raw and the way the result is turned into a {@link Response}.
+ */
+@Immutable
+public final class WsMethodPlan {
+    public final Reflection.Method method;
+    public final Optional<WsMethod> wsMethod;
+    public final String produces;
+    public final boolean raw;
+    /**
+     * the method returns a {@link CompletionStage}, the response is built from the value it completes with
+     */
+    public final boolean async;
+    final Parameter[] parameters;
+    /**
+     * null unless the method is {@link WsCache} annotated
+     */
+    final WsCache cache;
+    final String cacheRegion;
+    /**
+     * parameters that are not in the path or the query, indexes are added to the {@link WsCache} and
+     * {@link WsCoalesce} keys
+     */
+    final int[] keyParameters;
+    /**
+     * index of the {@link WsCache.KeyBy#REALM} parameter of the {@link WsCache} and {@link WsCoalesce} keys, -1 if not keyed by realm
+     */
+    final int cacheRealm;
+    final int coalesceRealm;
+    /**
+     * null unless the method is {@link WsCoalesce} annotated
+     */
+    final WsCoalesce coalesce;
+    /**
+     * null if {@link WebService} does not compress responses of the method
+     */
+    final CompressionPolicy compression;
+    /**
+     * ms, -1 for no limit
+     */
+    public final long timeout;
+    public final WsPriority.Level priority;
+    /**
+     * null if detached
+     */
+    private final String service;
+    private final boolean percentiles;
+    private volatile WsMetrics metrics;
+    private final Map<Class<? extends Annotation>, Annotation> annotations;
+    private final Validators.Validator beforeUnmarshaling;
+    private final Validators.Validator afterUnmarshaling;
+    private final Function<Object, Response> responseStrategy;
+    private final MethodInvoker invoker;
+
+    /**
+     * @param config of the service: {@link WsConfig#compressionPolicy}, {@link WsConfig#timeout} for methods
+     *               without {@link WsMethod#timeout()} and {@link WsConfig#percentiles}
+     */
+    public WsMethodPlan( Reflection.Method method, Object instance, WsConfig config ) {
+        this( method, instance, config.compressionPolicy, config.timeout, config.percentiles, true );
+    }
+
+    /**
+     * A plan that only extracts parameters: it has no instance to invoke, validate or measure.
+     */
+    static WsMethodPlan detached( Reflection.Method method ) {
+        return new WsMethodPlan( method, null, null, -1, false, false );
+    }
+
+    private WsMethodPlan( Reflection.Method method, Object instance, CompressionPolicy compression, long timeout,
+                          boolean percentiles, boolean bound ) {
+        this.method = method;
+        this.wsMethod = method.findAnnotation( WsMethod.class );
+        this.produces = wsMethod.map( WsMethod::produces ).orElse( Http.ContentType.APPLICATION_JSON );
+        this.raw = wsMethod.map( WsMethod::raw ).orElse( false );
+        this.timeout = wsMethod.map( WsMethod::timeout ).filter( t -> t >= 0 ).orElse( timeout );
+
+        var annotations = new HashMap<Class<? extends Annotation>, Annotation>();
+        for( var annotation : method.annotations() ) annotations.putIfAbsent( annotation.annotationType(), annotation );
+        this.annotations = Map.copyOf( annotations );
+        this.cache = ( WsCache ) annotations.get( WsCache.class );
+        var priority = ( WsPriority ) annotations.get( WsPriority.class );
+        this.priority = priority != null ? priority.value() : WsPriority.Level.NORMAL;
+        this.coalesce = ( WsCoalesce ) annotations.get( WsCoalesce.class );
+        this.compression = compression != null ? compression.with( ( WsCompression ) annotations.get( WsCompression.class ) ) : null;
+        this.service = bound ? instance.getClass().getName() : null;
+        this.percentiles = percentiles;
+        this.cacheRegion = cache == null || !bound ? null
+            : isUndefined( cache.region() ) ? instance.getClass().getName() + "." + method.name() : cache.region();
+
+        var pathParameters = wsMethod.map( wsm -> WsRouter.pathParameterNames( wsm.path() ) ).orElse( List.of() );
+        this.parameters = new Parameter[method.parameters.size()];
+        for( int i = 0; i < parameters.length; i++ ) {
+            var parameter = method.parameters.get( i );
+            parameters[i] = new Parameter( i, parameter,
+                extractor( parameter, pathParameters ),
+                bound ? nonEmpty( Validators.forParameter( method, parameter, instance, true ) ) : null,
+                bound ? nonEmpty( Validators.forParameter( method, parameter, instance, false ) ) : null );
+        }
+        this.keyParameters = keyParameters( method );
+        this.cacheRealm = cache != null ? realmParameter( cache.keyBy(), cache.realm() ) : -1;
+        this.coalesceRealm = coalesce != null ? realmParameter( coalesce.keyBy(), coalesce.realm() ) : -1;
+
+        this.beforeUnmarshaling = bound ? nonEmpty( Validators.forMethod( method, instance, true ) ) : null;
+        this.afterUnmarshaling = bound ? nonEmpty( Validators.forMethod( method, instance, false ) ) : null;
+        this.async = method.returnType().assignableTo( CompletionStage.class );
+        this.responseStrategy = async
+            ? asyncResponseStrategy( method.returnType(), produces, raw )
+            : responseStrategy( method, produces, raw );
+        this.invoker = bound ? MethodInvoker.of( method, instance ) : null;
+    }
+
+    private static int[] keyParameters( Reflection.Method method ) {
+        var indexes = new ArrayList<Integer>();
+        for( int i = 0; i < method.parameters.size(); i++ ) {
+            var parameter = method.parameters.get( i );
+            if( parameter.type().assignableFrom( HttpServerExchange.class ) || parameter.type().assignableFrom( Deadline.class ) ) continue;
+            var from = parameter.findAnnotation( WsParam.class ).map( WsParam::from ).orElse( WsParam.From.QUERY );
+            if( ( from != WsParam.From.PATH && from != WsParam.From.QUERY ) || parameter.type().assignableFrom( Session.class ) )
+                indexes.add( i );
+        }
+        return indexes.stream().mapToInt( Integer::intValue ).toArray();
+    }
+
+    private int realmParameter( WsCache.KeyBy[] keyBy, String realm ) {
+        if( !List.of( keyBy ).contains( WsCache.KeyBy.REALM ) ) return -1;
+
+        int index = parameterIndex( realm );
+        if( index < 0 ) throw new WsException( method.name() + ": keyed by realm, but there is no realm parameter '" + realm + "'" );
+        return index;
+    }
+
+    private static Validators.Validator nonEmpty( Validators.Validator validator ) {
+        return validator.isEmpty() ? null : validator;
+    }
+
+    private Extractor extractor( Reflection.Parameter parameter, List<String> pathParameters ) {
+        if( parameter.type().assignableFrom( HttpServerExchange.class ) )
+            return context -> new RoHttpServerExchange( context.exchange );
+        if( parameter.type().assignableFrom( Session.class ) )
+            return context -> context.session;
+        if( parameter.type().assignableFrom( Deadline.class ) )
+            return context -> context.deadline;
+
+        var wsParam = parameter.findAnnotation( WsParam.class ).orElse( null );
+        if( wsParam == null ) return context -> WsParams.fromQuery( context.exchange, parameter );
+
+        return switch( wsParam.from() ) {
+            case SESSION -> context -> WsParams.fromSession( context.session, parameter );
+            case HEADER -> context -> WsParams.fromHeader( context.exchange, parameter, wsParam );
+            case COOKIE -> context -> WsParams.fromCookie( context.exchange, parameter, wsParam );
+            case BODY -> context -> WsParams.fromBody( context.exchange, parameter );
+            case QUERY -> context -> WsParams.fromQuery( context.exchange, parameter, wsParam );
+            case PATH -> {
+                if( wsMethod.isEmpty() ) yield context -> {
+                    throw new WsException( "path parameter " + parameter.name() + " without " + WsMethod.class.getName() + " annotation" );
+                };
+                int index = pathParameters.indexOf( parameter.name() );
+                yield context -> context.pathParameter( index );
+            }
+        };
+    }
+
+    private static Function<Object, Response> responseStrategy( Reflection.Method method, String produces, boolean raw ) {
+        if( method.isVoid() ) return result -> Response.noContent();
+
+        var returnType = method.returnType();
+        if( returnType.isOptional() )
+            return result -> result != null ? optional( ( Optional<?> ) result, produces, raw ) : ok( null, produces, raw );
+        if( returnType.assignableTo( Result.class ) )
+            return result -> result != null ? result( ( Result<?, ?> ) result, produces, raw ) : ok( null, produces, raw );
+
+        return dynamicResponseStrategy( produces, raw );
+    }
+
+    private static Function<Object, Response> asyncResponseStrategy( Reflection returnType, String produces, boolean raw ) {
+        if( !returnType.typeParameters.isEmpty() && returnType.typeParameters.get( 0 ).underlying == Void.class )
+            return result -> Response.noContent();
+
+        return dynamicResponseStrategy( produces, raw );
+    }
+
+    private static Function<Object, Response> dynamicResponseStrategy( String produces, boolean raw ) {
+        return result -> {
+            if( result instanceof Response response ) return response;
+            else if( result instanceof Optional<?> optResult ) return optional( optResult, produces, raw );
+            else if( result instanceof Result<?, ?> resultResult ) return result( resultResult, produces, raw );
+            else return ok( result, produces, raw );
+        };
+    }
+
+    private static Response ok( Object body, String produces, boolean raw ) {
+        return Response.ok().withBody( body, raw ).withContentType( produces );
+    }
+
+    private static Response optional( Optional<?> result, String produces, boolean raw ) {
+        return result.isEmpty() ? Response.notFound() : ok( result.get(), produces, raw );
+    }
+
+    private static Response result( Result<?, ?> result, String produces, boolean raw ) {
+        if( result.isSuccess() ) return ok( result.successValue, produces, raw );
+        else return new Response( Http.StatusCode.INTERNAL_SERVER_ERROR, "" )
+            .withBody( result.failureValue, false )
+            .withContentType( Http.ContentType.APPLICATION_JSON );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public <A extends Annotation> Optional<A> annotation( Class<A> type ) {
+        return Optional.ofNullable( ( A ) annotations.get( type ) );
+    }
+
+    /**
+     * @return -1 if there is no such parameter
+     */
+    public int parameterIndex( String name ) {
+        for( var parameter : parameters )
+            if( parameter.parameter.name().equals( name ) ) return parameter.index;
+        return -1;
+    }
+
+    /**
+     * Invokes the method. Exceptions thrown by the method are propagated as is.
+     */
+    @SneakyThrows
+    public Object invoke( Object[] args ) {
+        if( invoker == null ) throw new IllegalStateException( "detached plan of " + method.name() );
+        return invoker.invoke( args );
+    }
+
+    /**
+     * Meters are registered on the first request routed to the method, methods never called publish none.
+     */
+    WsMetrics metrics() {
+        var metrics = this.metrics;
+        if( metrics != null ) return metrics;
+        if( service == null ) throw new IllegalStateException( "detached plan of " + method.name() );
+
+        synchronized( this ) {
+            if( this.metrics == null ) this.metrics = new WsMetrics( service, method.name(), percentiles );
+            return this.metrics;
+        }
+    }
+
+    /**
+     * @param result the value returned by the method or, for {@link #async} methods, the value the stage completed with
+     */
+    public Response response( Object result ) {
+        return responseStrategy.apply( result );
+    }
+
+    public ValidationErrors validateParameters( ArgumentFrame arguments, boolean beforeUnmarshaling ) {
+        var ret = ValidationErrors.empty();
+        for( var parameter : parameters ) {
+            var validator = beforeUnmarshaling ? parameter.beforeUnmarshaling : parameter.afterUnmarshaling;
+            if( validator != null ) ret = ret.merge( validator.validate( arguments.get( parameter.index ), arguments ) );
+        }
+        return ret;
+    }
+
+    public ValidationErrors validateMethod( ArgumentFrame arguments, boolean beforeUnmarshaling ) {
+        var validator = beforeUnmarshaling ? this.beforeUnmarshaling : this.afterUnmarshaling;
+        return validator != null ? validator.validate( arguments.values, arguments ) : ValidationErrors.empty();
+    }
+
+    @Override
+    public String toString() {
+        return wsMethod.map( WsMethod::path ).filter( path -> !isUndefined( path ) ).orElse( "/" + method.name() )
+            + " -> " + method.name();
+    }
+
+    @FunctionalInterface
+    interface Extractor {
+        Object extract( InvocationContext context );
+    }
+
+    static final class Parameter {
+        final int index;
+        final Reflection.Parameter parameter;
+        final Extractor extractor;
+        final Validators.Validator beforeUnmarshaling;
+        final Validators.Validator afterUnmarshaling;
+
+        private Parameter( int index, Reflection.Parameter parameter, Extractor extractor,
+                           Validators.Validator beforeUnmarshaling, Validators.Validator afterUnmarshaling ) {
+            this.index = index;
+            this.parameter = parameter;
+            this.extractor = extractor;
+            this.beforeUnmarshaling = beforeUnmarshaling;
+            this.afterUnmarshaling = afterUnmarshaling;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Meters of a web service method, created on its first request by {@link WsMethodPlan#metrics()} so that recording
+ * is a lookup by index:
+ * <ul>
+ *     <li>oap_ws_request - time from routing to the end of the exchange, by status</li>
+ *     <li>oap_ws_stage - time spent in each {@link Stage}</li>
+ *     <li>oap_ws_request_size and oap_ws_response_size - bytes, the request one only if Content-Length is declared</li>
+ * </ul>
+ * All of them are tagged by service and method. The request time and the sizes publish percentile histograms
+ * only if {@link WsConfig#percentiles} is set.
+ */
+final class WsMetrics {
+    private static final int MAX_STATUS = 600;
+
+    private final String service;
+    private final String method;
+    private final Timer[] stages = new Timer[Stage.values().length];
+    private final AtomicReferenceArray<Timer> requests = new AtomicReferenceArray<>( MAX_STATUS );
+    private final DistributionSummary requestSize;
+    private final DistributionSummary responseSize;
+    private final boolean percentiles;
+
+    WsMetrics( String service, String method, boolean percentiles ) {
+        this.service = service;
+        this.method = method;
+        this.percentiles = percentiles;
+
+        for( var stage : Stage.values() )
+            stages[stage.ordinal()] = Timer.builder( "oap_ws_stage" )
+                .tags( "service", service, "method", method, "stage", stage.tag )
+                .register( Metrics.globalRegistry );
+        this.requestSize = size( "oap_ws_request_size" );
+        this.responseSize = size( "oap_ws_response_size" );
+    }
+
+    private DistributionSummary size( String name ) {
+        return DistributionSummary.builder( name )
+            .baseUnit( "bytes" )
+            .tags( "service", service, "method", method )
+            .publishPercentileHistogram( percentiles )
+            .register( Metrics.globalRegistry );
+    }
+
+    /**
+     * @param start {@link System#nanoTime()} the stage started at
+     * @return now, the start of the next stage
+     */
+    long stage( Stage stage, long start ) {
+        long now = System.nanoTime();
+        record( stage, now - start );
+        return now;
+    }
+
+    void record( Stage stage, long nanos ) {
+        stages[stage.ordinal()].record( nanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * @param requestBytes  -1 if unknown
+     * @param responseBytes -1 if unknown
+     */
+    void request( int status, long nanos, long requestBytes, long responseBytes ) {
+        request( status ).record( nanos, TimeUnit.NANOSECONDS );
+        if( requestBytes >= 0 ) requestSize.record( requestBytes );
+        if( responseBytes >= 0 ) responseSize.record( responseBytes );
+    }
+
+    private Timer request( int status ) {
+        int index = status > 0 && status < MAX_STATUS ? status : 0;
+        var timer = requests.get( index );
+        if( timer == null ) {
+            timer = Timer.builder( "oap_ws_request" )
+                .tags( "service", service, "method", method, "status", String.valueOf( status ) )
+                .publishPercentileHistogram( percentiles )
+                .register( Metrics.globalRegistry );
+            requests.compareAndSet( index, null, timer );
+        }
+        return timer;
+    }
+
+    enum Stage {
+        ROUTE,
+        INTERCEPTORS_BEFORE,
+        /**
+         * reading path, query, headers and the body
+         */
+        EXTRACT,
+        VALIDATE_BEFORE_UNMARSHAL,
+        UNMARSHAL,
+        VALIDATE_AFTER_UNMARSHAL,
+        /**
+         * until the result is available, for asynchronous methods until the stage completes
+         */
+        INVOKE,
+        INTERCEPTORS_AFTER,
+        /**
+         * serialization included
+         */
+        SEND;
+
+        final String tag = name().toLowerCase( Locale.ROOT );
+    }
+}
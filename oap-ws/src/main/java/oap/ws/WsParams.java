@@ -24,6 +24,8 @@
 
 package oap.ws;
 
+import io.undertow.server.RequestTooBigException;
+import io.undertow.util.StatusCodes;
 import lombok.extern.slf4j.Slf4j;
 import oap.http.server.nio.HttpServerExchange;
 import oap.reflect.Reflection;
@@ -38,6 +40,7 @@ import java.util.Set;
 
 import static java.lang.Character.isUpperCase;
 import static java.lang.Character.toUpperCase;
+import static oap.http.Http.Headers.CONTENT_TYPE;
 
 @Slf4j
 public class WsParams {
@@ -68,7 +71,7 @@ public class WsParams {
     }
 
     public static Object fromHeader( HttpServerExchange exchange, Reflection.Parameter parameter, WsParam wsParam ) {
-        log.trace( "headers: {}", exchange.getRequestHeaders() );
+        if( log.isTraceEnabled() ) log.trace( "headers: {}", exchange.getRequestHeaders() );
 
         var names = Sets.of( wsParam.name() );
         names.add( uncamelHeaderName( parameter.name() ) );
@@ -84,7 +87,7 @@ public class WsParams {
 
     public static Object wrapOptional( Reflection.Parameter parameter, Object value ) throws WsClientException {
         if( parameter.type().isOptional() ) return Optional.ofNullable( value );
-        if( value == null ) throw new WsClientException( "'" + parameter + "' is required" );
+        if( value == null ) throw WsClientException.stackless( "'" + parameter + "' is required" );
         return value;
     }
 
@@ -100,6 +103,14 @@ public class WsParams {
         return wrapOptional( parameter, cookie );
     }
 
+    public static Optional<String> fromPath( WsRouter.Match match, Reflection.Parameter parameter ) {
+        return match.pathParameter( parameter.name() );
+    }
+
+    /**
+     * @deprecated recompiles the mapping for every parameter, use {@link #fromPath(WsRouter.Match, Reflection.Parameter)}
+     */
+    @Deprecated
     public static Optional<String> fromPath( HttpServerExchange exchange, Optional<WsMethod> wsMethod, Reflection.Parameter parameter ) {
         return wsMethod
             .map( wsm -> WsMethodMatcher.pathParam( wsm.path(), exchange.getRelativePath(), parameter.name() ) )
@@ -114,7 +125,7 @@ public class WsParams {
                     return bytes.length > 0 ? Optional.of( bytes ) : Optional.empty();
                 }
                 var bytes = exchange.readBody();
-                if( bytes.length < 1 ) throw new WsClientException( "no body defined for: " + parameter.type() + ":" + parameter.name() );
+                if( bytes.length < 1 ) throw WsClientException.stackless( "no body defined for: " + parameter.type() + ":" + parameter.name() );
                 return bytes;
             }
             if( parameter.type().assignableFrom( InputStream.class ) ) {
@@ -123,10 +134,12 @@ public class WsParams {
             byte[] bytes = exchange.readBody();
             if( parameter.type().isOptional() ) {
                 if( bytes.length < 1 ) return Optional.empty();
-                return Optional.of( new String( bytes ) );
+                return Optional.of( new RequestBody( bytes, exchange.getRequestHeader( CONTENT_TYPE ) ) );
             }
-            if( bytes.length < 1 ) throw new WsClientException( "no body defined for: " + parameter.type() + ":" + parameter.name() );
-            return new String( bytes );
+            if( bytes.length < 1 ) throw WsClientException.stackless( "no body defined for: " + parameter.type() + ":" + parameter.name() );
+            return new RequestBody( bytes, exchange.getRequestHeader( CONTENT_TYPE ) );
+        } catch( RequestTooBigException e ) {
+            throw WsClientException.stackless( e.getMessage(), StatusCodes.REQUEST_ENTITY_TOO_LARGE, List.of( e.getMessage() ) );
         } catch( IOException e ) {
             throw new WsClientException( "Cannot construct from: " + parameter.type() + ":" + parameter.name(), e );
         }
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Serialized responses of {@link WsCache} methods. The cache is bounded by the total size of the responses,
+ * least recently used ones are evicted first.
+ * <p>
+ * Services invalidate entries by region when the data behind them changes.
+ */
+@Slf4j
+public class WsResponseCache {
+    public static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    public final String name;
+    private final Cache<Key, Entry> cache;
+    private final ConcurrentHashMap<String, Counter[]> counters = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize in bytes
+     */
+    public WsResponseCache( long maxSize ) {
+        this( "default", maxSize );
+    }
+
+    /**
+     * @param name    tags the metrics, caches sharing a name share their meters
+     * @param maxSize in bytes
+     */
+    public WsResponseCache( String name, long maxSize ) {
+        this.name = name;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight( maxSize )
+            .<Key, Entry>weigher( ( key, entry ) -> key.key.length() + entry.response.weight() )
+            .build();
+
+        Gauge.builder( "oap_ws_response_cache_entries", cache, Cache::size ).tag( "cache", name ).register( Metrics.globalRegistry );
+    }
+
+    /**
+     * oap_ws_response_cache, tagged by cache, region and result=hit|miss
+     */
+    private Counter[] counters( String region ) {
+        return counters.computeIfAbsent( region, r -> new Counter[] {
+            Metrics.counter( "oap_ws_response_cache", "cache", name, "region", r, "result", "hit" ),
+            Metrics.counter( "oap_ws_response_cache", "cache", name, "region", r, "result", "miss" )
+        } );
+    }
+
+    public Optional<BufferedResponse> get( String region, String key ) {
+        var cacheKey = new Key( region, key );
+        var entry = cache.getIfPresent( cacheKey );
+        if( entry != null && entry.expiresAt < System.currentTimeMillis() ) {
+            cache.asMap().remove( cacheKey, entry );
+            entry = null;
+        }
+
+        if( entry == null ) {
+            counters( region )[1].increment();
+            misses.increment();
+            return Optional.empty();
+        }
+        counters( region )[0].increment();
+        hits.increment();
+        return Optional.of( entry.response );
+    }
+
+    /**
+     * @param ttl ms
+     */
+    public void put( String region, String key, BufferedResponse response, long ttl ) {
+        cache.put( new Key( region, key ), new Entry( response, System.currentTimeMillis() + ttl ) );
+    }
+
+    public void invalidate( String region ) {
+        cache.asMap().keySet().removeIf( key -> key.region.equals( region ) );
+    }
+
+    /**
+     * @param key matches cache keys: path, query and user, separated by '\n', in the order of {@link WsCache#keyBy()},
+     *            followed by {@code name=value} of the header, cookie, body and session parameters and by the content
+     *            type of a negotiated non-JSON codec
+     */
+    public void invalidate( String region, Predicate<String> key ) {
+        cache.asMap().keySet().removeIf( k -> k.region.equals( region ) && key.test( k.key ) );
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    @ToString
+    @EqualsAndHashCode
+    private static final class Key {
+        private final String region;
+        private final String key;
+
+        private Key( String region, String key ) {
+            this.region = region;
+            this.key = key;
+        }
+    }
+
+    private static final class Entry {
+        private final BufferedResponse response;
+        private final long expiresAt;
+
+        private Entry( BufferedResponse response, long expiresAt ) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws;
+
+import lombok.extern.slf4j.Slf4j;
+import oap.http.server.nio.HttpServerExchange.HttpMethod;
+import oap.reflect.Reflect;
+import oap.reflect.Reflection;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static oap.util.Strings.isUndefined;
+
+/**
+ * Per http method segment trie of web service methods. It is built once for a web service,
+ * so that the lookup of a method takes time proportional to the path length.
+ * <p>
+ * Every path segment is one of
+ * <ul>
+ *     <li>literal - {@code /users}</li>
+ *     <li>parameter - {@code /{email}}</li>
+ *     <li>regex parameter - {@code /{year:(\d{4})}}</li>
+ *     <li>pattern - literal mixed with parameters, like {@code /sort={id}}</li>
+ * </ul>
+ * Literals take precedence over patterns, patterns over parameters.
+ * Methods without {@link WsMethod} are mapped to {@code /<method name>} for any http method.
+ */
+@Slf4j
+public class WsRouter {
+    private static final Pattern SEGMENT_PARAM_PATTERN = Pattern.compile( "\\{([^:}]+):([^)]+\\))}|\\{([^}]+)}" );
+
+    private final EnumMap<HttpMethod, Node> roots = new EnumMap<>( HttpMethod.class );
+    private final Function<Reflection.Method, WsMethodPlan> plans;
+
+    public WsRouter( Class<?> wsClass ) {
+        this( Reflect.reflect( wsClass ), method -> null );
+    }
+
+    /**
+     * @param plans plan of every routed method, see {@link Match#plan}
+     */
+    public WsRouter( Reflection reflection, Function<Reflection.Method, WsMethodPlan> plans ) {
+        this.plans = plans;
+
+        for( var method : reflection.methods ) {
+            var wsMethod = method.findAnnotation( WsMethod.class ).orElse( null );
+            if( wsMethod == null ) continue;
+            var path = isUndefined( wsMethod.path() ) ? "/" + method.name() : wsMethod.path();
+            for( var httpMethod : wsMethod.method() ) add( httpMethod, path, method );
+        }
+        for( var method : reflection.methods ) {
+            if( !method.isPublic() || method.isAnnotatedWith( WsMethod.class ) ) continue;
+            for( var httpMethod : HttpMethod.values() ) add( httpMethod, "/" + method.name(), method );
+        }
+    }
+
+    private static List<String> segments( String path ) {
+        var segments = new ArrayList<String>();
+        if( path.isEmpty() || "/".equals( path ) ) return segments;
+
+        int from = path.charAt( 0 ) == '/' ? 1 : 0;
+        while( true ) {
+            int end = path.indexOf( '/', from );
+            if( end < 0 ) {
+                segments.add( path.substring( from ) );
+                return segments;
+            }
+            segments.add( path.substring( from, end ) );
+            from = end + 1;
+        }
+    }
+
+    /**
+     * @return names of the path parameters of the mapping in the order they are captured by {@link Match}
+     */
+    public static List<String> pathParameterNames( String mapping ) {
+        var names = new ArrayList<String>();
+        for( var segment : segments( mapping ) ) {
+            var matcher = SEGMENT_PARAM_PATTERN.matcher( segment );
+            while( matcher.find() ) names.add( matcher.group( 1 ) != null ? matcher.group( 1 ) : matcher.group( 3 ) );
+        }
+        return names;
+    }
+
+    private void add( HttpMethod httpMethod, String path, Reflection.Method method ) {
+        var node = roots.computeIfAbsent( httpMethod, m -> new Node() );
+        var nodes = new ArrayList<Node>();
+        for( var segment : segments( path ) ) {
+            node = node.child( segment );
+            nodes.add( node );
+        }
+
+        if( node.route == null )
+            node.route = new Route( method, plans.apply( method ), path, nodes.toArray( new Node[0] ),
+                pathParameterNames( path ).toArray( new String[0] ) );
+        else
+            log.trace( "{} {} is already mapped to {}, skipping {}", httpMethod, path, node.route.method.name(), method.name() );
+    }
+
+    public Optional<Reflection.Method> findMethod( String path, HttpMethod httpMethod ) {
+        return Optional.ofNullable( find( path, httpMethod ) );
+    }
+
+    /**
+     * @return matched method or null
+     */
+    public Reflection.Method find( String path, HttpMethod httpMethod ) {
+        var route = route( path, httpMethod );
+        return route != null ? route.method : null;
+    }
+
+    /**
+     * Matches the path and captures all its path parameters at once.
+     *
+     * @return match or null
+     */
+    public Match match( String path, HttpMethod httpMethod ) {
+        var route = route( path, httpMethod );
+        return route != null ? new Match( route, route.capture( path ) ) : null;
+    }
+
+    private Route route( String path, HttpMethod httpMethod ) {
+        var root = roots.get( httpMethod );
+        if( root == null ) return null;
+
+        if( path.isEmpty() || "/".equals( path ) ) return root.route;
+
+        return route( root, path, path.charAt( 0 ) == '/' ? 1 : 0 );
+    }
+
+    /**
+     * @param from start of the next segment or -1 if the path is consumed
+     */
+    private static Route route( Node node, String path, int from ) {
+        if( from < 0 ) return node.route;
+
+        int end = path.indexOf( '/', from );
+        if( end < 0 ) end = path.length();
+        int next = end < path.length() ? end + 1 : -1;
+
+        for( var literal : node.literals ) {
+            if( literal.matches( path, from, end ) ) {
+                var route = route( literal, path, next );
+                if( route != null ) return route;
+            }
+        }
+        for( var pattern : node.patterns ) {
+            if( pattern.matches( path, from, end ) ) {
+                var route = route( pattern, path, next );
+                if( route != null ) return route;
+            }
+        }
+        if( node.parameter != null && end > from ) return route( node.parameter, path, next );
+
+        return null;
+    }
+
+    public static final class Route {
+        private static final String[] NO_VALUES = new String[0];
+
+        public final Reflection.Method method;
+        public final WsMethodPlan plan;
+        public final String path;
+        private final Node[] segments;
+        private final String[] names;
+
+        private Route( Reflection.Method method, WsMethodPlan plan, String path, Node[] segments, String[] names ) {
+            this.method = method;
+            this.plan = plan;
+            this.path = path;
+            this.segments = segments;
+            this.names = names;
+        }
+
+        /**
+         * @return index of the path parameter in {@link Match} or -1
+         */
+        public int indexOf( String name ) {
+            for( int i = 0; i < names.length; i++ ) if( names[i].equals( name ) ) return i;
+            return -1;
+        }
+
+        private String[] capture( String path ) {
+            if( names.length == 0 ) return NO_VALUES;
+
+            var values = new String[names.length];
+            int value = 0;
+            int from = !path.isEmpty() && path.charAt( 0 ) == '/' ? 1 : 0;
+            for( var segment : segments ) {
+                int end = path.indexOf( '/', from );
+                if( end < 0 ) end = path.length();
+
+                if( segment.groups.length > 0 ) {
+                    var matcher = segment.pattern.matcher( path ).region( from, end );
+                    if( matcher.matches() )
+                        for( var group : segment.groups ) values[value++] = matcher.group( group );
+                } else if( segment.pattern == null && segment.segment.indexOf( '{' ) >= 0 )
+                    values[value++] = path.substring( from, end );
+
+                from = end + 1;
+            }
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            return path + " -> " + method.name();
+        }
+    }
+
+    /**
+     * Result of the routing: the method and the values of its path parameters captured in a single pass.
+     */
+    public static final class Match {
+        public final Route route;
+        public final Reflection.Method method;
+        public final WsMethodPlan plan;
+        private final String[] values;
+
+        private Match( Route route, String[] values ) {
+            this.route = route;
+            this.method = route.method;
+            this.plan = route.plan;
+            this.values = values;
+        }
+
+        /**
+         * @param index see {@link Route#indexOf(String)}
+         */
+        public String pathParameter( int index ) {
+            return index >= 0 && index < values.length ? values[index] : null;
+        }
+
+        public Optional<String> pathParameter( String name ) {
+            return Optional.ofNullable( pathParameter( route.indexOf( name ) ) );
+        }
+    }
+
+    private static class Node {
+        private static final String[] NO_GROUPS = new String[0];
+
+        private final ArrayList<Node> literals = new ArrayList<>();
+        private final ArrayList<Node> patterns = new ArrayList<>();
+        private final String segment;
+        private final Pattern pattern;
+        private final String[] groups;
+        private Node parameter;
+        private Route route;
+
+        private Node() {
+            this( null, null, NO_GROUPS );
+        }
+
+        private Node( String segment, Pattern pattern, String[] groups ) {
+            this.segment = segment;
+            this.pattern = pattern;
+            this.groups = groups;
+        }
+
+        private static Node pattern( String segment ) {
+            var regex = new StringBuilder();
+            var groups = new ArrayList<String>();
+            Matcher matcher = SEGMENT_PARAM_PATTERN.matcher( segment );
+            int last = 0;
+            while( matcher.find() ) {
+                if( matcher.start() > last ) regex.append( Pattern.quote( segment.substring( last, matcher.start() ) ) );
+                var group = "p" + groups.size();
+                groups.add( group );
+                regex.append( "(?<" ).append( group ).append( '>' )
+                    .append( matcher.group( 2 ) != null ? matcher.group( 2 ) : "[^/]+" )
+                    .append( ')' );
+                last = matcher.end();
+            }
+            if( last < segment.length() ) regex.append( Pattern.quote( segment.substring( last ) ) );
+            return new Node( segment, Pattern.compile( regex.toString() ), groups.toArray( new String[0] ) );
+        }
+
+        private Node child( String segment ) {
+            if( segment.indexOf( '{' ) < 0 ) {
+                for( var node : literals ) if( node.segment.equals( segment ) ) return node;
+                var node = new Node( segment, null, NO_GROUPS );
+                literals.add( node );
+                return node;
+            }
+
+            var matcher = SEGMENT_PARAM_PATTERN.matcher( segment );
+            if( matcher.matches() && matcher.group( 3 ) != null ) {
+                if( parameter == null ) parameter = new Node( segment, null, NO_GROUPS );
+                return parameter;
+            }
+
+            for( var node : patterns ) if( node.segment.equals( segment ) ) return node;
+            var node = pattern( segment );
+            patterns.add( node );
+            return node;
+        }
+
+        private boolean matches( String path, int from, int end ) {
+            if( pattern != null ) return pattern.matcher( path ).region( from, end ).matches();
+
+            return segment.length() == end - from && path.regionMatches( from, segment, 0, segment.length() );
+        }
+    }
+}
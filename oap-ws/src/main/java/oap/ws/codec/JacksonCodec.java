@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.codec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import oap.reflect.Reflection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Binary formats backed by a jackson data format, the mapper is set up close to {@link oap.json.Binder#json}.
+ */
+public class JacksonCodec implements WsCodec {
+    private final String contentType;
+    private final ObjectMapper mapper;
+
+    public JacksonCodec( String contentType, JsonFactory factory ) {
+        this.contentType = contentType;
+        this.mapper = new ObjectMapper( factory )
+            .findAndRegisterModules()
+            .setSerializationInclusion( JsonInclude.Include.NON_NULL )
+            .configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false )
+            .configure( SerializationFeature.FAIL_ON_EMPTY_BEANS, false );
+        this.mapper.getFactory()
+            .disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET )
+            .disable( JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM );
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public void encode( Object value, OutputStream out ) throws IOException {
+        mapper.writeValue( out, value );
+    }
+
+    @Override
+    public <T> T decode( Reflection type, InputStream in ) throws IOException {
+        return mapper.readValue( in, mapper.getTypeFactory().constructType( type.getType() ) );
+    }
+
+    @Override
+    public String toString() {
+        return contentType;
+    }
+}
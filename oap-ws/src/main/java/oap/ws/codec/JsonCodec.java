@@ -0,0 +1,57 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.codec;
+
+import oap.http.Http;
+import oap.json.Binder;
+import oap.reflect.Reflection;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * JSON through {@link Binder#json}, the format web services have always used.
+ */
+public final class JsonCodec implements WsCodec {
+    @Override
+    public String contentType() {
+        return Http.ContentType.APPLICATION_JSON;
+    }
+
+    @Override
+    public void encode( Object value, OutputStream out ) {
+        Binder.json.marshal( value, out );
+    }
+
+    @Override
+    public <T> T decode( Reflection type, InputStream in ) {
+        return Binder.json.unmarshal( type, in );
+    }
+
+    @Override
+    public String toString() {
+        return contentType();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.codec;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Codecs by media type. JSON is the default, it is used when the client accepts nothing more specific.
+ * Other codecs can be added with {@link #register(WsCodec)}.
+ */
+public final class WsCodecs {
+    public static final WsCodec JSON = new JsonCodec();
+    public static final WsCodec SMILE = new JacksonCodec( "application/x-jackson-smile", new SmileFactory() );
+    public static final WsCodec CBOR = new JacksonCodec( "application/cbor", new CBORFactory() );
+    public static final WsCodec MESSAGE_PACK = new JacksonCodec( "application/x-msgpack", new MessagePackFactory() );
+
+    private static final List<WsCodec> codecs = new CopyOnWriteArrayList<>( List.of( JSON, SMILE, CBOR, MESSAGE_PACK ) );
+
+    private WsCodecs() {
+    }
+
+    public static void register( WsCodec codec ) {
+        codecs.removeIf( c -> c.contentType().equals( codec.contentType() ) );
+        codecs.add( codec );
+    }
+
+    /**
+     * @param contentType may have parameters, like charset
+     */
+    public static Optional<WsCodec> forContentType( String contentType ) {
+        if( contentType == null ) return Optional.empty();
+        var mediaType = mediaType( contentType );
+        for( var codec : codecs )
+            if( codec.contentType().equalsIgnoreCase( mediaType ) ) return Optional.of( codec );
+        return Optional.empty();
+    }
+
+    /**
+     * @param accept Accept header, may be null
+     * @return the codec with the highest quality, JSON if none is acceptable
+     */
+    public static WsCodec negotiate( String accept ) {
+        if( accept == null || accept.isEmpty() ) return JSON;
+
+        WsCodec best = JSON;
+        double bestQuality = 0;
+        for( var range : accept.split( "," ) ) {
+            var mediaType = mediaType( range );
+            var codec = mediaType.equals( "*/*" ) || mediaType.equals( "application/*" )
+                ? JSON
+                : forContentType( mediaType ).orElse( null );
+            if( codec == null ) continue;
+            var quality = quality( range );
+            if( quality > bestQuality ) {
+                best = codec;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static String mediaType( String range ) {
+        int parameters = range.indexOf( ';' );
+        return ( parameters < 0 ? range : range.substring( 0, parameters ) ).trim();
+    }
+
+    private static double quality( String range ) {
+        for( var parameter : range.split( ";" ) ) {
+            var trimmed = parameter.trim();
+            if( trimmed.startsWith( "q=" ) ) try {
+                return Double.parseDouble( trimmed.substring( 2 ) );
+            } catch( NumberFormatException e ) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+}
@@ -33,9 +33,17 @@ import java.util.Optional;
 
 @Slf4j
 public class Interceptors {
+    private static final ClassValue<String> names = new ClassValue<>() {
+        @Override
+        protected String computeValue( Class<?> type ) {
+            return type.getSimpleName();
+        }
+    };
+
     public static Optional<Response> before( List<Interceptor> interceptors, InvocationContext context ) {
-        for( var interceptor : interceptors ) {
-            log.trace( "running before call {}", interceptor.getClass().getSimpleName() );
+        for( var i = 0; i < interceptors.size(); i++ ) {
+            var interceptor = interceptors.get( i );
+            if( log.isTraceEnabled() ) log.trace( "running before call {}", names.get( interceptor.getClass() ) );
             var response = interceptor.before( context );
             if( response.isPresent() ) return response;
         }
@@ -45,7 +53,7 @@ public class Interceptors {
     public static void after( List<Interceptor> interceptors, Response response, InvocationContext context ) {
         for( var i = interceptors.size() - 1; i >= 0; i-- ) {
             var interceptor = interceptors.get( i );
-            log.trace( "running after call {}", interceptor.getClass().getSimpleName() );
+            if( log.isTraceEnabled() ) log.trace( "running after call {}", names.get( interceptor.getClass() ) );
             interceptor.after( response, context );
         }
     }
@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.limit;
+
+import lombok.ToString;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Additive increase, multiplicative decrease: grows by one while the limit is actually used, shrinks by backoff
+ * on every dropped request or one slower than timeout.
+ */
+@ToString
+public final class AimdLimit implements LimitAlgorithm {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoff;
+    private final long timeout;
+    private final AtomicInteger limit;
+
+    /**
+     * @param timeout ns, -1 if only dropped requests shrink the limit
+     */
+    public AimdLimit( int initialLimit, int minLimit, int maxLimit, double backoff, long timeout ) {
+        this.limit = new AtomicInteger( initialLimit );
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoff = backoff;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int limit() {
+        return limit.get();
+    }
+
+    @Override
+    public void onSample( long rtt, int inflight, boolean dropped ) {
+        boolean shrink = dropped || timeout >= 0 && rtt > timeout;
+        int current;
+        int next;
+        do {
+            current = limit.get();
+            if( shrink ) next = Math.max( minLimit, Math.min( current - 1, ( int ) ( current * backoff ) ) );
+            else if( inflight * 2 >= current ) next = Math.min( maxLimit, current + 1 );
+            else return;
+        } while( next != current && !limit.compareAndSet( current, next ) );
+    }
+}
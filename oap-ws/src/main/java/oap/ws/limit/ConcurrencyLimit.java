@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.limit;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import oap.ws.WsPriority;
+
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load shedding of a web service, see {@link oap.ws.WsConfig#concurrencyLimit}. Requests over the limit get 503
+ * with Retry-After at once instead of queueing, so that latency stays low for the admitted ones.
+ */
+@EqualsAndHashCode
+@ToString
+public class ConcurrencyLimit {
+    public Algorithm algorithm = Algorithm.GRADIENT;
+    /**
+     * the limit of {@link Algorithm#FIXED}, the initial one of the others
+     */
+    public int limit = 20;
+    public int minLimit = 1;
+    public int maxLimit = 1000;
+    /**
+     * {@link Algorithm#AIMD}: the limit is multiplied by it when a request is dropped
+     */
+    public double backoff = 0.9;
+    /**
+     * {@link Algorithm#AIMD}: ms, slower requests count as dropped, -1 for none
+     */
+    public long timeout = -1;
+    /**
+     * {@link Algorithm#GRADIENT}: how much slower than usual requests may get before the limit shrinks
+     */
+    public double tolerance = 1.5;
+    /**
+     * shares of the limit {@link WsPriority.Level#NORMAL} and {@link WsPriority.Level#SHEDDABLE} methods may use
+     */
+    public double normalShare = 0.9;
+    public double sheddableShare = 0.5;
+    /**
+     * seconds, Retry-After of rejected requests
+     */
+    public int retryAfter = 1;
+
+    public Limiter limiter( String service ) {
+        var shares = new EnumMap<WsPriority.Level, Double>( WsPriority.Level.class );
+        shares.put( WsPriority.Level.CRITICAL, 1.0 );
+        shares.put( WsPriority.Level.NORMAL, normalShare );
+        shares.put( WsPriority.Level.SHEDDABLE, sheddableShare );
+        return new Limiter( service, algorithm(), shares );
+    }
+
+    private LimitAlgorithm algorithm() {
+        return switch( algorithm ) {
+            case FIXED -> new FixedLimit( limit );
+            case AIMD -> new AimdLimit( limit, minLimit, maxLimit, backoff,
+                timeout < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos( timeout ) );
+            case GRADIENT -> new GradientLimit( limit, minLimit, maxLimit, tolerance );
+        };
+    }
+
+    public enum Algorithm {
+        FIXED, AIMD, GRADIENT
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.limit;
+
+import lombok.ToString;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Follows latency: the ratio of the long term average rtt to the recent one shrinks the limit as soon as
+ * requests start queueing, and lets it grow by about sqrt(limit) while they do not.
+ * A dropped request halves the gradient.
+ * <p>
+ * The averages and the estimate are replaced together by compare-and-set, samples never wait for each other.
+ */
+@ToString
+public final class GradientLimit implements LimitAlgorithm {
+    private static final double LONG_WINDOW = 600;
+    private static final double SHORT_WINDOW = 10;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicReference<State> state;
+
+    /**
+     * @param tolerance how much slower than the long term average requests may get before the limit shrinks, >= 1
+     */
+    public GradientLimit( int initialLimit, int minLimit, int maxLimit, double tolerance ) {
+        this.state = new AtomicReference<>( new State( initialLimit, 0, 0 ) );
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public int limit() {
+        return ( int ) state.get().estimate;
+    }
+
+    @Override
+    public void onSample( long rtt, int inflight, boolean dropped ) {
+        State current;
+        State next;
+        do {
+            current = state.get();
+            next = next( current, rtt, inflight, dropped );
+        } while( !state.compareAndSet( current, next ) );
+    }
+
+    private State next( State current, long rtt, int inflight, boolean dropped ) {
+        double longRtt = current.longRtt == 0 ? rtt : current.longRtt;
+        double shortRtt = current.longRtt == 0 ? rtt : current.shortRtt;
+        double estimate = current.estimate;
+        longRtt += ( rtt - longRtt ) / LONG_WINDOW;
+        shortRtt += ( rtt - shortRtt ) / SHORT_WINDOW;
+
+        // the service is not using the limit, there is nothing to learn about a bigger one
+        if( !dropped && inflight * 2 < estimate && shortRtt <= longRtt ) return new State( estimate, longRtt, shortRtt );
+
+        double gradient = Math.max( 0.5, Math.min( 1.0, tolerance * longRtt / shortRtt ) );
+        if( dropped ) gradient = 0.5;
+        double target = estimate * gradient + Math.sqrt( estimate );
+        estimate = Math.max( minLimit, Math.min( maxLimit, estimate * ( 1 - SMOOTHING ) + target * SMOOTHING ) );
+
+        // forget a long term average inflated by a past overload once latency is back to normal
+        if( longRtt / shortRtt > 2 ) longRtt *= 0.95;
+        return new State( estimate, longRtt, shortRtt );
+    }
+
+    @ToString
+    private static final class State {
+        final double estimate;
+        final double longRtt;
+        final double shortRtt;
+
+        private State( double estimate, double longRtt, double shortRtt ) {
+            this.estimate = estimate;
+            this.longRtt = longRtt;
+            this.shortRtt = shortRtt;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import oap.ws.WsPriority;
+
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control of a web service: a request either gets a {@link Token} right away or is rejected,
+ * requests never queue. Each {@link WsPriority.Level} may use its own share of the limit.
+ * <p>
+ * Metrics, tagged by service: oap_ws_concurrency_limit, oap_ws_concurrency_inflight and
+ * oap_ws_concurrency_rejected, the latter also by priority.
+ */
+public final class Limiter {
+    private final LimitAlgorithm algorithm;
+    private final EnumMap<WsPriority.Level, Double> shares;
+    private final EnumMap<WsPriority.Level, Counter> rejected = new EnumMap<>( WsPriority.Level.class );
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    public Limiter( String service, LimitAlgorithm algorithm, EnumMap<WsPriority.Level, Double> shares ) {
+        this.algorithm = algorithm;
+        this.shares = shares;
+
+        for( var level : WsPriority.Level.values() )
+            rejected.put( level, Metrics.counter( "oap_ws_concurrency_rejected", "service", service, "priority", level.name() ) );
+        Gauge.builder( "oap_ws_concurrency_limit", algorithm, LimitAlgorithm::limit )
+            .tag( "service", service )
+            .register( Metrics.globalRegistry );
+        Gauge.builder( "oap_ws_concurrency_inflight", inflight, AtomicInteger::get )
+            .tag( "service", service )
+            .register( Metrics.globalRegistry );
+    }
+
+    public int limit() {
+        return algorithm.limit();
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    /**
+     * @return null if the request is rejected
+     */
+    public Token tryAcquire( WsPriority.Level priority ) {
+        int allowed = Math.max( 1, ( int ) Math.ceil( algorithm.limit() * shares.getOrDefault( priority, 1.0 ) ) );
+        while( true ) {
+            int current = inflight.get();
+            if( current >= allowed ) {
+                rejected.get( priority ).increment();
+                return null;
+            }
+            if( inflight.compareAndSet( current, current + 1 ) ) return new Token( current + 1 );
+        }
+    }
+
+    public final class Token {
+        private final long start = System.nanoTime();
+        private final int inflightAtStart;
+
+        private Token( int inflightAtStart ) {
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        /**
+         * @param dropped the request failed because of overload or timed out
+         */
+        public void release( boolean dropped ) {
+            inflight.decrementAndGet();
+            algorithm.onSample( System.nanoTime() - start, inflightAtStart, dropped );
+        }
+    }
+}
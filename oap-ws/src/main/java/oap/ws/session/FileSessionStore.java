@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import oap.ws.Session;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * On heap sessions written behind to {@code <directory>/<id>.session}, so they survive a restart.
+ * A changed session is written once per writeInterval ms however often it changes, by a thread of the store:
+ * requests never wait for the disk. Up to writeInterval of changes are lost if the process dies.
+ * Sessions not older than expirationTime are loaded back on start. Attribute values have to be {@link java.io.Serializable}.
+ * The directory should be readable by this process only: the files are java serialized.
+ */
+@Slf4j
+public class FileSessionStore extends OnHeapSessionStore implements Session.Listener {
+    private static final String EXTENSION = ".session";
+
+    private final Path directory;
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService writer;
+
+    public FileSessionStore( Path directory, long expirationTime, long maxSize ) {
+        this( directory, expirationTime, maxSize, 1000 );
+    }
+
+    /**
+     * @param writeInterval ms between writing the changed sessions
+     */
+    @SneakyThrows
+    public FileSessionStore( Path directory, long expirationTime, long maxSize, long writeInterval ) {
+        super( "file", expirationTime, maxSize );
+        this.directory = directory;
+
+        Files.createDirectories( directory );
+        load( expirationTime );
+
+        this.writer = Executors.newSingleThreadScheduledExecutor( new ThreadFactoryBuilder()
+            .setNameFormat( "ws-session-writer" )
+            .setDaemon( true )
+            .build() );
+        writer.scheduleWithFixedDelay( this::flush, writeInterval, writeInterval, MILLISECONDS );
+    }
+
+    private void load( long expirationTime ) throws IOException {
+        var since = System.currentTimeMillis() - expirationTime;
+        try( var files = Files.list( directory ) ) {
+            for( var file : ( Iterable<Path> ) files::iterator ) {
+                var name = file.getFileName().toString();
+                if( !name.endsWith( EXTENSION ) ) continue;
+                if( Files.getLastModifiedTime( file ).toMillis() < since ) {
+                    Files.deleteIfExists( file );
+                    continue;
+                }
+                var id = URLDecoder.decode( name.substring( 0, name.length() - EXTENSION.length() ), UTF_8 );
+                sessions.put( id, new Session( id, SessionSerializer.deserialize( Files.readAllBytes( file ) ), this ) );
+            }
+        }
+        log.info( "{} sessions loaded from {}", sessions.size(), directory );
+    }
+
+    @Override
+    protected Session create( String id ) {
+        return new Session( id, Map.of(), this );
+    }
+
+    /**
+     * The file is deleted by the writer, after any pending write of the session.
+     */
+    @Override
+    protected void onRemoval( RemovalNotification<String, Session> notification ) {
+        super.onRemoval( notification );
+        if( notification.getCause() != RemovalCause.REPLACED ) dirty.add( notification.getKey() );
+    }
+
+    @Override
+    public void set( Session session, String key, Object value ) {
+        dirty.add( session.id );
+    }
+
+    @Override
+    public void remove( Session session, String key ) {
+        dirty.add( session.id );
+    }
+
+    @Override
+    public void clear( Session session ) {
+        dirty.add( session.id );
+    }
+
+    /**
+     * Writes the sessions changed since the last flush and deletes the files of the removed ones.
+     */
+    public synchronized void flush() {
+        for( var id : dirty ) {
+            dirty.remove( id );
+            var session = sessions.getIfPresent( id );
+            var file = file( id );
+            try {
+                if( session == null ) Files.deleteIfExists( file );
+                else {
+                    var tmp = file.resolveSibling( file.getFileName() + ".tmp" );
+                    Files.write( tmp, SessionSerializer.serialize( session.attributes() ) );
+                    Files.move( tmp, file, REPLACE_EXISTING, ATOMIC_MOVE );
+                }
+            } catch( IOException e ) {
+                log.warn( "cannot write session {}: {}", id, e.toString() );
+            }
+        }
+    }
+
+    /**
+     * ids come from cookies, encoded to stay a single file name in the directory.
+     */
+    private Path file( String id ) {
+        return directory.resolve( URLEncoder.encode( id, UTF_8 ) + EXTENSION );
+    }
+
+    /**
+     * Pending changes are written and live sessions are touched, so their age on the next start counts from the shutdown.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        flush();
+        var now = FileTime.fromMillis( System.currentTimeMillis() );
+        for( var id : sessions.asMap().keySet() )
+            try {
+                var file = file( id );
+                if( Files.exists( file ) ) Files.setLastModifiedTime( file, now );
+            } catch( IOException e ) {
+                log.warn( "cannot touch session {}: {}", id, e.toString() );
+            }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Nodes in one JVM, connected by the cluster name. Deltas are delivered synchronously. Values are serialized and
+ * deserialized on the way, as a transport between processes would: peers never share an instance, and values that
+ * cannot be serialized do not reach them. For tests and running several nodes on one machine.
+ */
+public class LoopbackSessionTransport implements SessionTransport {
+    private static final Map<String, List<Node>> clusters = new ConcurrentHashMap<>();
+
+    private final List<Node> cluster;
+    private Node node;
+
+    public LoopbackSessionTransport( String cluster ) {
+        this.cluster = clusters.computeIfAbsent( cluster, c -> new CopyOnWriteArrayList<>() );
+    }
+
+    @Override
+    public void connect( Node node ) {
+        this.node = node;
+        cluster.add( node );
+    }
+
+    @Override
+    public void publish( List<SessionDelta> deltas ) {
+        for( var peer : cluster )
+            if( peer != node ) peer.apply( copy( deltas ) );
+    }
+
+    @Override
+    public Optional<Map<String, Object>> fetch( String id ) {
+        for( var peer : cluster ) {
+            if( peer == node ) continue;
+            var values = peer.snapshot( id );
+            if( values.isPresent() ) return Optional.of( SessionSerializer.deserialize( SessionSerializer.serialize( values.get() ) ) );
+        }
+        return Optional.empty();
+    }
+
+    private static List<SessionDelta> copy( List<SessionDelta> deltas ) {
+        var copies = new ArrayList<SessionDelta>( deltas.size() );
+        for( var delta : deltas ) {
+            if( delta.type != SessionDelta.Type.SET ) copies.add( delta );
+            else {
+                var value = SessionSerializer.deserialize( SessionSerializer.serialize( Map.of( delta.key, delta.value ) ) ).get( delta.key );
+                if( value != null ) copies.add( SessionDelta.set( delta.id, delta.key, value ) );
+            }
+        }
+        return copies;
+    }
+
+    @Override
+    public void close() {
+        cluster.remove( node );
+    }
+}
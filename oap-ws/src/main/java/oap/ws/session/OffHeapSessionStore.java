@@ -0,0 +1,310 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import oap.ws.Session;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Serialized session attributes in direct memory, the heap only holds the ids and page numbers. At most maxBytes
+ * of them are kept, the least recently used sessions are evicted beyond that.
+ * <p>
+ * The memory is an arena of 1MB direct chunks cut into 256 byte pages. Chunks are allocated while the store grows and
+ * kept for its lifetime: pages of a removed or shrunk session go to a free list and are reused, so a busy store
+ * allocates no direct memory and never waits for the collector to release some.
+ * <p>
+ * {@link #get(String)} copies the pages of the session to the heap and deserializes all of its attributes into
+ * a working copy for the request, on every request: the price of keeping them off heap, sessions with large
+ * attributes read on every request are better kept on heap. Changes of the copy are recorded and applied to the
+ * stored attributes at once by {@link #release(Session)}, so concurrent requests of the same session do not
+ * overwrite each other's attributes and a request serializes the session once at most.
+ * Attribute values have to be {@link java.io.Serializable}.
+ * <p>
+ * Metrics: oap_ws_sessions, oap_ws_sessions_bytes, the pages in use, oap_ws_sessions_arena_bytes, the chunks
+ * allocated, and oap_ws_sessions_removed, by cause, all tagged store=off-heap.
+ */
+public class OffHeapSessionStore implements SessionStore {
+    private static final int REMOVED = Integer.MIN_VALUE;
+    private static final int[] NO_PAGES = new int[0];
+
+    private final Cache<String, Slot> sessions;
+    private final Arena arena = new Arena();
+    private final AtomicLong bytes = new AtomicLong();
+    private final EnumMap<RemovalCause, Counter> removed = new EnumMap<>( RemovalCause.class );
+
+    public OffHeapSessionStore( long expirationTime, long maxBytes ) {
+        for( var cause : RemovalCause.values() )
+            removed.put( cause, Metrics.counter( "oap_ws_sessions_removed", "store", "off-heap", "cause", cause.name() ) );
+
+        this.sessions = CacheBuilder.newBuilder()
+            .expireAfterAccess( expirationTime, MILLISECONDS )
+            .maximumWeight( maxBytes )
+            .<String, Slot>weigher( ( id, slot ) -> id.length() * 2 + slot.capacity() )
+            .<String, Slot>removalListener( notification -> {
+                // a slot is only replaced by itself, to be weighed again
+                if( notification.getCause() == RemovalCause.REPLACED ) return;
+                notification.getValue().free();
+                removed.get( notification.getCause() ).increment();
+            } )
+            .build();
+
+        Gauge.builder( "oap_ws_sessions", sessions, Cache::size ).tag( "store", "off-heap" ).register( Metrics.globalRegistry );
+        Gauge.builder( "oap_ws_sessions_bytes", bytes, AtomicLong::get ).tag( "store", "off-heap" ).register( Metrics.globalRegistry );
+        Gauge.builder( "oap_ws_sessions_arena_bytes", arena, Arena::bytes ).tag( "store", "off-heap" ).register( Metrics.globalRegistry );
+    }
+
+    @Override
+    public Optional<Session> get( String id ) {
+        var slot = sessions.getIfPresent( id );
+        return slot == null ? Optional.empty() : Optional.of( WorkingCopy.of( id, slot.read() ) );
+    }
+
+    @Override
+    public Session getOrCreate( String id ) {
+        return WorkingCopy.of( id, sessions.asMap().computeIfAbsent( id, i -> new Slot() ).read() );
+    }
+
+    /**
+     * A session evicted in the meantime is stored again: it is in use.
+     */
+    @Override
+    public void release( Session session ) {
+        if( !( session instanceof WorkingCopy copy ) ) return;
+        var changes = copy.changes.drain();
+        if( changes.isEmpty() ) return;
+
+        while( true ) {
+            var slot = sessions.asMap().computeIfAbsent( session.id, i -> new Slot() );
+            int grown = slot.apply( changes );
+            if( grown == REMOVED ) continue;
+            if( grown != 0 ) sessions.asMap().replace( session.id, slot, slot );
+            return;
+        }
+    }
+
+    @Override
+    public void remove( String id ) {
+        sessions.invalidate( id );
+    }
+
+    @Override
+    public void clear() {
+        sessions.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return sessions.size();
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return direct memory taken by the store, used or not
+     */
+    public long arenaBytes() {
+        return arena.bytes();
+    }
+
+    /**
+     * The stored attributes of a session, the first length bytes of its pages in order.
+     */
+    private final class Slot {
+        private int[] pages = NO_PAGES;
+        private int length;
+        private boolean removed;
+
+        synchronized int capacity() {
+            return pages.length * Arena.PAGE;
+        }
+
+        synchronized Map<String, Object> read() {
+            if( length == 0 ) return new HashMap<>();
+            return SessionSerializer.deserialize( arena.read( pages, length ) );
+        }
+
+        /**
+         * Pages are added as the attributes grow and returned to the arena as they shrink, all of them if there
+         * are none.
+         *
+         * @return the change of the capacity or {@link #REMOVED}
+         */
+        synchronized int apply( List<Consumer<Map<String, Object>>> changes ) {
+            if( removed ) return REMOVED;
+
+            var values = read();
+            for( var change : changes ) change.accept( values );
+            var serialized = values.isEmpty() ? null : SessionSerializer.serialize( values );
+            length = serialized != null ? serialized.length : 0;
+
+            int needed = ( length + Arena.PAGE - 1 ) / Arena.PAGE;
+            int grown = ( needed - pages.length ) * Arena.PAGE;
+            if( needed > pages.length ) {
+                var added = arena.allocate( needed - pages.length );
+                var resized = Arrays.copyOf( pages, needed );
+                System.arraycopy( added, 0, resized, pages.length, added.length );
+                pages = resized;
+            } else if( needed < pages.length ) {
+                arena.free( Arrays.copyOfRange( pages, needed, pages.length ) );
+                pages = needed == 0 ? NO_PAGES : Arrays.copyOf( pages, needed );
+            }
+            bytes.addAndGet( grown );
+            if( serialized != null ) arena.write( pages, serialized );
+            return grown;
+        }
+
+        synchronized void free() {
+            removed = true;
+            bytes.addAndGet( -capacity() );
+            arena.free( pages );
+            pages = NO_PAGES;
+            length = 0;
+        }
+    }
+
+    /**
+     * Direct chunks cut into pages, a page is addressed by its number across all the chunks.
+     * Pages are read and written with absolute bulk operations, the chunks are shared by all the sessions.
+     */
+    private static final class Arena {
+        static final int PAGE = 256;
+        static final int CHUNK = 1024 * 1024;
+        static final int PAGES_PER_CHUNK = CHUNK / PAGE;
+
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+        private int[] free = new int[PAGES_PER_CHUNK];
+        private int freeCount;
+
+        synchronized int[] allocate( int count ) {
+            while( freeCount < count ) grow();
+            var pages = Arrays.copyOfRange( free, freeCount - count, freeCount );
+            freeCount -= count;
+            return pages;
+        }
+
+        synchronized void free( int[] pages ) {
+            if( freeCount + pages.length > free.length ) free = Arrays.copyOf( free, Math.max( free.length * 2, freeCount + pages.length ) );
+            System.arraycopy( pages, 0, free, freeCount, pages.length );
+            freeCount += pages.length;
+        }
+
+        private void grow() {
+            var chunks = this.chunks;
+            int first = chunks.length * PAGES_PER_CHUNK;
+            var grown = Arrays.copyOf( chunks, chunks.length + 1 );
+            grown[chunks.length] = ByteBuffer.allocateDirect( CHUNK );
+            this.chunks = grown;
+
+            var pages = new int[PAGES_PER_CHUNK];
+            // the lowest page numbers on top of the stack
+            for( int i = 0; i < pages.length; i++ ) pages[i] = first + PAGES_PER_CHUNK - 1 - i;
+            free( pages );
+        }
+
+        void write( int[] pages, byte[] data ) {
+            var chunks = this.chunks;
+            for( int i = 0, offset = 0; offset < data.length; i++, offset += PAGE ) {
+                int page = pages[i];
+                chunks[page / PAGES_PER_CHUNK].put( page % PAGES_PER_CHUNK * PAGE, data, offset, Math.min( PAGE, data.length - offset ) );
+            }
+        }
+
+        byte[] read( int[] pages, int length ) {
+            var chunks = this.chunks;
+            var data = new byte[length];
+            for( int i = 0, offset = 0; offset < length; i++, offset += PAGE ) {
+                int page = pages[i];
+                chunks[page / PAGES_PER_CHUNK].get( page % PAGES_PER_CHUNK * PAGE, data, offset, Math.min( PAGE, length - offset ) );
+            }
+            return data;
+        }
+
+        long bytes() {
+            return ( long ) chunks.length * CHUNK;
+        }
+    }
+
+    private static final class WorkingCopy extends Session {
+        private final Changes changes;
+
+        private WorkingCopy( String id, Map<String, Object> values, Changes changes ) {
+            super( id, values, changes );
+            this.changes = changes;
+        }
+
+        static WorkingCopy of( String id, Map<String, Object> values ) {
+            return new WorkingCopy( id, values, new Changes() );
+        }
+    }
+
+    /**
+     * Changes of a working copy in the order they were made, the ones before invalidating it are dropped.
+     */
+    private static final class Changes implements Session.Listener {
+        private final ArrayList<Consumer<Map<String, Object>>> changes = new ArrayList<>();
+
+        @Override
+        public synchronized void set( Session session, String key, Object value ) {
+            changes.add( values -> values.put( key, value ) );
+        }
+
+        @Override
+        public synchronized void remove( Session session, String key ) {
+            changes.add( values -> values.remove( key ) );
+        }
+
+        @Override
+        public synchronized void clear( Session session ) {
+            changes.clear();
+            changes.add( Map::clear );
+        }
+
+        synchronized List<Consumer<Map<String, Object>>> drain() {
+            var drained = List.copyOf( changes );
+            changes.clear();
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import oap.ws.Session;
+
+import java.util.EnumMap;
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Sessions as objects on heap, expiring after expirationTime ms without access and, when maxSize is set,
+ * evicting the least recently used ones over it.
+ * <p>
+ * Metrics: oap_ws_sessions and oap_ws_sessions_removed, by cause, both tagged store=on-heap.
+ */
+@Slf4j
+public class OnHeapSessionStore implements SessionStore {
+    protected final Cache<String, Session> sessions;
+    private final EnumMap<RemovalCause, Counter> removed = new EnumMap<>( RemovalCause.class );
+
+    /**
+     * @param maxSize sessions, -1 for no limit
+     */
+    public OnHeapSessionStore( long expirationTime, long maxSize ) {
+        this( "on-heap", expirationTime, maxSize );
+    }
+
+    protected OnHeapSessionStore( String name, long expirationTime, long maxSize ) {
+        for( var cause : RemovalCause.values() )
+            removed.put( cause, Metrics.counter( "oap_ws_sessions_removed", "store", name, "cause", cause.name() ) );
+
+        var builder = CacheBuilder.newBuilder()
+            .expireAfterAccess( expirationTime, MILLISECONDS )
+            .removalListener( this::onRemoval );
+        if( maxSize >= 0 ) builder.maximumSize( maxSize );
+        this.sessions = builder.build();
+
+        Gauge.builder( "oap_ws_sessions", sessions, Cache::size ).tag( "store", name ).register( Metrics.globalRegistry );
+    }
+
+    protected void onRemoval( RemovalNotification<String, Session> notification ) {
+        removed.get( notification.getCause() ).increment();
+    }
+
+    @Override
+    public Optional<Session> get( String id ) {
+        return Optional.ofNullable( sessions.getIfPresent( id ) );
+    }
+
+    @Override
+    @SneakyThrows
+    public Session getOrCreate( String id ) {
+        return sessions.get( id, () -> {
+            log.trace( "creating new session {}", id );
+            return create( id );
+        } );
+    }
+
+    protected Session create( String id ) {
+        return new Session( id );
+    }
+
+    @Override
+    public void remove( String id ) {
+        sessions.invalidate( id );
+    }
+
+    @Override
+    public void clear() {
+        sessions.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import oap.ws.Session;
+import oap.ws.WsExecutors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Sessions shared by the nodes behind a load balancer without sticky sessions.
+ * <p>
+ * Every node keeps the sessions it used recently on heap, as {@link OnHeapSessionStore} does. Changes are sent to
+ * the peers holding the same session every flushInterval ms, only the last change of a key is sent.
+ * {@link Session#invalidate()} and {@link #remove(String)} are sent at once, with the changes before them, and win
+ * over the changes of that session the peers have not sent yet.
+ * A session missing locally is fetched from the peers, waiting for them at most fetchTimeout ms. Concurrent requests
+ * of the session wait for one fetch, and changes of the session arriving while it is fetched are applied to what the
+ * peers returned. Ids no peer has are remembered for missExpiration ms, so that requests with unknown session cookies
+ * do not ask the peers again. An id the peers did not answer for in time is asked for again next time.
+ * <p>
+ * The store joins its peers on {@link #start()}, once it is fully constructed.
+ * <p>
+ * Replication is eventually consistent: for up to flushInterval a peer may read the previous value of a key.
+ * Evicting or expiring a session is local to a node, {@link #clear()} is too.
+ * <p>
+ * Metrics: oap_ws_sessions_replicated tagged direction=in|out, oap_ws_sessions_fetched tagged result=hit|miss|timeout,
+ * and those of {@link OnHeapSessionStore} tagged store=replicated.
+ */
+@Slf4j
+public class ReplicatedSessionStore extends OnHeapSessionStore implements Session.Listener, SessionTransport.Node {
+    private final SessionTransport transport;
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService fetcher;
+    private final long fetchTimeout;
+    private final Cache<String, Boolean> missing;
+    private final ConcurrentHashMap<String, Fetching> fetching = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, SessionDelta> pending = new LinkedHashMap<>();
+    private final Object publishing = new Object();
+    private final ThreadLocal<Boolean> applying = ThreadLocal.withInitial( () -> false );
+    private final Counter replicatedIn = Metrics.counter( "oap_ws_sessions_replicated", "direction", "in" );
+    private final Counter replicatedOut = Metrics.counter( "oap_ws_sessions_replicated", "direction", "out" );
+    private final Counter fetchHits = Metrics.counter( "oap_ws_sessions_fetched", "result", "hit" );
+    private final Counter fetchMisses = Metrics.counter( "oap_ws_sessions_fetched", "result", "miss" );
+    private final Counter fetchTimeouts = Metrics.counter( "oap_ws_sessions_fetched", "result", "timeout" );
+
+    /**
+     * @param maxSize       sessions kept on this node, -1 for no limit
+     * @param flushInterval ms between sending changes to the peers
+     */
+    public ReplicatedSessionStore( SessionTransport transport, long expirationTime, long maxSize, long flushInterval ) {
+        this( transport, expirationTime, maxSize, flushInterval, 100, 10000 );
+    }
+
+    /**
+     * @param fetchTimeout   ms to wait for the peers when a session is missing locally
+     * @param missExpiration ms an id none of the peers has is not fetched again
+     */
+    public ReplicatedSessionStore( SessionTransport transport, long expirationTime, long maxSize, long flushInterval,
+                                   long fetchTimeout, long missExpiration ) {
+        super( "replicated", expirationTime, maxSize );
+        this.transport = transport;
+        this.fetchTimeout = fetchTimeout;
+        this.missing = CacheBuilder.newBuilder()
+            .expireAfterWrite( missExpiration, MILLISECONDS )
+            .maximumSize( 100000 )
+            .build();
+        this.fetcher = WsExecutors.virtualOrPlatform( "ws-session-fetch" );
+        this.flusher = Executors.newSingleThreadScheduledExecutor( new ThreadFactoryBuilder()
+            .setNameFormat( "ws-session-replication" )
+            .setDaemon( true )
+            .build() );
+        flusher.scheduleWithFixedDelay( this::flush, flushInterval, flushInterval, MILLISECONDS );
+    }
+
+    /**
+     * Connects to the peers: from now on they send changes to this node and may fetch its sessions.
+     */
+    @Override
+    public void start() {
+        transport.connect( this );
+    }
+
+    @Override
+    public Optional<Session> get( String id ) {
+        var session = super.get( id );
+        if( session.isPresent() ) return session;
+        if( missing.getIfPresent( id ) != null ) return Optional.empty();
+
+        var fetching = new Fetching();
+        var inFlight = this.fetching.putIfAbsent( id, fetching );
+        if( inFlight != null ) return inFlight.await( fetchTimeout );
+
+        try {
+            var fetched = fetch( id );
+            var result = fetching.complete( id, fetched );
+            if( fetched.status == Fetched.Status.MISSING ) {
+                fetchMisses.increment();
+                // a change arrived while fetching, a peer has the session after all
+                if( !fetching.changed() ) missing.put( id, true );
+            } else if( fetched.status == Fetched.Status.FOUND ) fetchHits.increment();
+            return Optional.ofNullable( result );
+        } finally {
+            this.fetching.remove( id, fetching );
+        }
+    }
+
+    private Fetched fetch( String id ) {
+        var future = fetcher.submit( () -> transport.fetch( id ) );
+        try {
+            return future.get( fetchTimeout, MILLISECONDS ).map( Fetched::found ).orElse( Fetched.MISSING );
+        } catch( TimeoutException e ) {
+            future.cancel( true );
+            fetchTimeouts.increment();
+            log.debug( "no session {} from the peers in {}ms", id, fetchTimeout );
+            return Fetched.UNAVAILABLE;
+        } catch( ExecutionException e ) {
+            log.warn( "cannot fetch session {}: {}", id, e.getCause().toString() );
+            return Fetched.UNAVAILABLE;
+        } catch( InterruptedException e ) {
+            future.cancel( true );
+            Thread.currentThread().interrupt();
+            return Fetched.UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public Session getOrCreate( String id ) {
+        var session = get( id ).orElseGet( () -> super.getOrCreate( id ) );
+        missing.invalidate( id );
+        return session;
+    }
+
+    @Override
+    protected Session create( String id ) {
+        return new Session( id, Map.of(), this );
+    }
+
+    @Override
+    public void remove( String id ) {
+        super.remove( id );
+        send( SessionDelta.drop( id ) );
+    }
+
+    @Override
+    public void set( Session session, String key, Object value ) {
+        if( !applying.get() ) enqueue( SessionDelta.set( session.id, key, value ) );
+    }
+
+    @Override
+    public void remove( Session session, String key ) {
+        if( !applying.get() ) enqueue( SessionDelta.remove( session.id, key ) );
+    }
+
+    @Override
+    public void clear( Session session ) {
+        if( !applying.get() ) send( SessionDelta.clear( session.id ) );
+    }
+
+    private void enqueue( SessionDelta delta ) {
+        var key = delta.id + '\n' + delta.key;
+        synchronized( pending ) {
+            pending.remove( key );
+            pending.put( key, delta );
+        }
+    }
+
+    /**
+     * Changes of the session before the delta are pointless after it, but other sessions' are sent first.
+     */
+    private void send( SessionDelta delta ) {
+        synchronized( pending ) {
+            discard( delta.id );
+            pending.put( delta.id, delta );
+        }
+        flush();
+    }
+
+    private void discard( String id ) {
+        synchronized( pending ) {
+            pending.values().removeIf( d -> d.id.equals( id ) );
+        }
+    }
+
+    /**
+     * The pending lock is not held while publishing: peers applying deltas synchronously take theirs.
+     */
+    public void flush() {
+        synchronized( publishing ) {
+            List<SessionDelta> deltas;
+            synchronized( pending ) {
+                if( pending.isEmpty() ) return;
+                deltas = new ArrayList<>( pending.values() );
+                pending.clear();
+            }
+            try {
+                transport.publish( deltas );
+                replicatedOut.increment( deltas.size() );
+            } catch( Exception e ) {
+                log.warn( "cannot replicate {} session changes: {}", deltas.size(), e.toString() );
+            }
+        }
+    }
+
+    @Override
+    public void apply( List<SessionDelta> deltas ) {
+        replicatedIn.increment( deltas.size() );
+        applying.set( true );
+        try {
+            for( var delta : deltas ) {
+                missing.invalidate( delta.id );
+                if( delta.type == SessionDelta.Type.DROP || delta.type == SessionDelta.Type.CLEAR ) discard( delta.id );
+                var fetching = this.fetching.get( delta.id );
+                if( fetching != null && fetching.buffer( delta ) ) continue;
+                if( delta.type == SessionDelta.Type.DROP ) {
+                    sessions.invalidate( delta.id );
+                    continue;
+                }
+                var session = sessions.asMap().get( delta.id );
+                if( session == null ) continue;
+                switch( delta.type ) {
+                    case SET -> session.set( delta.key, delta.value );
+                    case REMOVE -> session.remove( delta.key );
+                    case CLEAR -> session.invalidate();
+                    default -> throw new IllegalStateException( "unexpected " + delta.type );
+                }
+            }
+        } finally {
+            applying.set( false );
+        }
+    }
+
+    @Override
+    public Optional<Map<String, Object>> snapshot( String id ) {
+        return Optional.ofNullable( sessions.asMap().get( id ) ).map( Session::attributes );
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+        transport.close();
+        fetcher.shutdownNow();
+    }
+
+    /**
+     * What the peers answered for a session.
+     */
+    private static final class Fetched {
+        static final Fetched MISSING = new Fetched( Status.MISSING, null );
+        static final Fetched UNAVAILABLE = new Fetched( Status.UNAVAILABLE, null );
+
+        final Status status;
+        /**
+         * null unless found
+         */
+        final Map<String, Object> values;
+
+        private Fetched( Status status, Map<String, Object> values ) {
+            this.status = status;
+            this.values = values;
+        }
+
+        static Fetched found( Map<String, Object> values ) {
+            return new Fetched( Status.FOUND, values );
+        }
+
+        enum Status {
+            FOUND,
+            /**
+             * no peer has the session
+             */
+            MISSING,
+            /**
+             * the peers did not answer in time or failed
+             */
+            UNAVAILABLE
+        }
+    }
+
+    /**
+     * A fetch in flight: concurrent requests of the session wait for it, changes of the session are buffered
+     * until it completes and applied to the fetched attributes before they are stored.
+     */
+    private final class Fetching {
+        private final List<SessionDelta> deltas = new ArrayList<>();
+        private final CompletableFuture<Session> session = new CompletableFuture<>();
+        private boolean completed;
+
+        /**
+         * @return false if the fetch is complete, the delta applies to the stored session then
+         */
+        synchronized boolean buffer( SessionDelta delta ) {
+            if( completed ) return false;
+            deltas.add( delta );
+            return true;
+        }
+
+        synchronized boolean changed() {
+            return !deltas.isEmpty();
+        }
+
+        /**
+         * @return the stored session, null if the peers have none, did not answer or it was dropped meanwhile
+         */
+        Session complete( String id, Fetched fetched ) {
+            Session stored = null;
+            synchronized( this ) {
+                if( fetched.status == Fetched.Status.FOUND ) {
+                    var values = new HashMap<>( fetched.values );
+                    boolean dropped = false;
+                    for( var delta : deltas )
+                        switch( delta.type ) {
+                            case SET -> values.put( delta.key, delta.value );
+                            case REMOVE -> values.remove( delta.key );
+                            case CLEAR -> values.clear();
+                            case DROP -> dropped = true;
+                        }
+                    if( !dropped ) stored = sessions.asMap().computeIfAbsent( id, i -> new Session( id, values, ReplicatedSessionStore.this ) );
+                }
+                completed = true;
+            }
+            session.complete( stored );
+            return stored;
+        }
+
+        Optional<Session> await( long timeout ) {
+            try {
+                return Optional.ofNullable( session.get( timeout, MILLISECONDS ) );
+            } catch( TimeoutException | ExecutionException e ) {
+                return Optional.empty();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * A change of a session, as replicated between nodes by a {@link SessionTransport}.
+ */
+@ToString
+@EqualsAndHashCode
+public final class SessionDelta implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 4164170323457231082L;
+
+    public final String id;
+    public final Type type;
+    public final String key;
+    public final Object value;
+
+    private SessionDelta( String id, Type type, String key, Object value ) {
+        this.id = id;
+        this.type = type;
+        this.key = key;
+        this.value = value;
+    }
+
+    public static SessionDelta set( String id, String key, Object value ) {
+        return new SessionDelta( id, Type.SET, key, value );
+    }
+
+    public static SessionDelta remove( String id, String key ) {
+        return new SessionDelta( id, Type.REMOVE, key, null );
+    }
+
+    public static SessionDelta clear( String id ) {
+        return new SessionDelta( id, Type.CLEAR, null, null );
+    }
+
+    public static SessionDelta drop( String id ) {
+        return new SessionDelta( id, Type.DROP, null, null );
+    }
+
+    public enum Type {
+        SET, REMOVE,
+        /**
+         * {@link oap.ws.Session#invalidate()}
+         */
+        CLEAR,
+        /**
+         * the session is removed from the store
+         */
+        DROP
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Session attributes as a count followed by name, tag and value of each. Strings, booleans, ints, longs and doubles
+ * take their own bytes only, any other {@link Serializable} value is written with java serialization and read back
+ * through an {@link ObjectInputFilter} that admits classes of java.lang, java.util, java.time and oap only.
+ * Packages of application attributes are added with the {@value #ALLOWED_PROPERTY} system property, a filter pattern
+ * such as {@code com.example.**}. Attributes that are not {@link Serializable} or that the filter rejects are dropped
+ * with a warning.
+ * <p>
+ * Attributes written by java serialization as a whole, before this format, are still read, through the same filter.
+ */
+@Slf4j
+final class SessionSerializer {
+    static final String ALLOWED_PROPERTY = "oap.ws.session.serializable";
+
+    private static final int VERSION = 1;
+    private static final byte SKIPPED = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte SERIALIZED = 6;
+
+    private static final ObjectInputFilter filter = ObjectInputFilter.Config.createFilter(
+        allowed( System.getProperty( ALLOWED_PROPERTY, "" ) ) + "java.lang.*;java.util.*;java.time.*;oap.**;maxdepth=32;!*" );
+
+    private SessionSerializer() {
+    }
+
+    private static String allowed( String patterns ) {
+        return patterns.isBlank() ? "" : patterns.strip() + ( patterns.strip().endsWith( ";" ) ? "" : ";" );
+    }
+
+    @SneakyThrows
+    static byte[] serialize( Map<String, Object> values ) {
+        var out = new ByteArrayOutputStream( 256 );
+        var data = new DataOutputStream( out );
+        data.writeByte( VERSION );
+        data.writeInt( values.size() );
+        for( var entry : values.entrySet() ) {
+            var value = entry.getValue();
+            data.writeUTF( entry.getKey() );
+            if( !( value instanceof Serializable ) ) {
+                log.warn( "session attribute {} of {} is not serializable, skipping", entry.getKey(), value.getClass() );
+                data.writeByte( SKIPPED );
+            } else if( value instanceof String string ) {
+                data.writeByte( STRING );
+                writeBytes( data, string.getBytes( StandardCharsets.UTF_8 ) );
+            } else if( value instanceof Boolean bool ) {
+                data.writeByte( BOOLEAN );
+                data.writeBoolean( bool );
+            } else if( value instanceof Integer integer ) {
+                data.writeByte( INT );
+                data.writeInt( integer );
+            } else if( value instanceof Long longValue ) {
+                data.writeByte( LONG );
+                data.writeLong( longValue );
+            } else if( value instanceof Double doubleValue ) {
+                data.writeByte( DOUBLE );
+                data.writeDouble( doubleValue );
+            } else {
+                data.writeByte( SERIALIZED );
+                var serialized = new ByteArrayOutputStream( 128 );
+                try( var oos = new ObjectOutputStream( serialized ) ) {
+                    oos.writeObject( value );
+                }
+                writeBytes( data, serialized.toByteArray() );
+            }
+        }
+        data.flush();
+        return out.toByteArray();
+    }
+
+    static Map<String, Object> deserialize( byte[] bytes ) {
+        if( bytes.length >= 2 && bytes[0] == ( byte ) 0xAC && bytes[1] == ( byte ) 0xED ) return deserializeJava( bytes );
+
+        var values = new HashMap<String, Object>();
+        try( var data = new DataInputStream( new ByteArrayInputStream( bytes ) ) ) {
+            int version = data.readByte();
+            if( version != VERSION ) throw new IOException( "unknown format " + version );
+            int size = data.readInt();
+            for( int i = 0; i < size; i++ ) {
+                var key = data.readUTF();
+                byte tag = data.readByte();
+                Object value = switch( tag ) {
+                    case SKIPPED -> null;
+                    case STRING -> new String( readBytes( data ), StandardCharsets.UTF_8 );
+                    case BOOLEAN -> data.readBoolean();
+                    case INT -> data.readInt();
+                    case LONG -> data.readLong();
+                    case DOUBLE -> data.readDouble();
+                    case SERIALIZED -> readObject( key, readBytes( data ) );
+                    default -> throw new IOException( "unknown tag " + tag + " of " + key );
+                };
+                if( value != null ) values.put( key, value );
+            }
+        } catch( IOException e ) {
+            log.warn( "cannot restore session attributes: {}", e.toString() );
+        }
+        return values;
+    }
+
+    private static void writeBytes( DataOutputStream data, byte[] bytes ) throws IOException {
+        data.writeInt( bytes.length );
+        data.write( bytes );
+    }
+
+    private static byte[] readBytes( DataInputStream data ) throws IOException {
+        var bytes = new byte[data.readInt()];
+        data.readFully( bytes );
+        return bytes;
+    }
+
+    /**
+     * @return null if the value cannot be restored
+     */
+    private static Object readObject( String key, byte[] bytes ) {
+        try( var ois = objectInputStream( new ByteArrayInputStream( bytes ) ) ) {
+            return ois.readObject();
+        } catch( IOException | ClassNotFoundException e ) {
+            log.warn( "cannot restore session attribute {}: {}", key, e.toString() );
+            return null;
+        }
+    }
+
+    private static Map<String, Object> deserializeJava( byte[] bytes ) {
+        var values = new HashMap<String, Object>();
+        try( var ois = objectInputStream( new ByteArrayInputStream( bytes ) ) ) {
+            int size = ois.readInt();
+            for( int i = 0; i < size; i++ ) {
+                var key = ( String ) ois.readObject();
+                if( key != null ) values.put( key, ois.readObject() );
+            }
+        } catch( IOException | ClassNotFoundException e ) {
+            log.warn( "cannot restore session attributes: {}", e.toString() );
+        }
+        return values;
+    }
+
+    private static ObjectInputStream objectInputStream( InputStream in ) throws IOException {
+        var ois = new ObjectInputStream( in );
+        ois.setObjectInputFilter( filter );
+        return ois;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import oap.ws.Session;
+
+import java.io.Closeable;
+import java.util.Optional;
+
+/**
+ * Where {@link oap.ws.SessionManager} keeps sessions. Stores that serialize sessions hand out sessions with a
+ * {@link Session.Listener} collecting the changes, to be written back by the store.
+ */
+public interface SessionStore extends Closeable {
+    Optional<Session> get( String id );
+
+    /**
+     * @return the session with this id, a new empty one if there is none
+     */
+    Session getOrCreate( String id );
+
+    void remove( String id );
+
+    void clear();
+
+    long size();
+
+    /**
+     * Called with the session of a request once the request is complete, stores writing the changes back per
+     * request do it here.
+     */
+    default void release( Session session ) {
+    }
+
+    /**
+     * Called once by {@link oap.ws.SessionManager} before the first request, stores connecting to anything
+     * outside of the process do it here rather than while being constructed.
+     */
+    default void start() {
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) Open Application Platform Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package oap.ws.session;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * How {@link ReplicatedSessionStore}s of different nodes talk to each other. Implementations connect one node
+ * to its peers, a message published by a node is never delivered back to it.
+ *
+ * @see LoopbackSessionTransport
+ */
+public interface SessionTransport extends Closeable {
+    /**
+     * Called once, before anything is published or fetched.
+     */
+    void connect( Node node );
+
+    /**
+     * Deltas of one node have to be applied by the peers in the order they were published.
+     */
+    void publish( List<SessionDelta> deltas );
+
+    /**
+     * @return attributes of the session from the first peer having it
+     */
+    Optional<Map<String, Object>> fetch( String id );
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * The local side of the transport.
+     */
+    interface Node {
+        void apply( List<SessionDelta> deltas );
+
+        Optional<Map<String, Object>> snapshot( String id );
+    }
+}
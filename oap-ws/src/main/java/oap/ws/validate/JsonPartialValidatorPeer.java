@@ -32,6 +32,9 @@ import oap.json.JsonException;
 import oap.json.schema.JsonSchema;
 import oap.reflect.Reflect;
 import oap.reflect.Reflection;
+import oap.ws.ArgumentFrame;
+import oap.ws.MethodInvoker;
+import oap.ws.RequestBody;
 import oap.ws.WsClientException;
 import oap.ws.WsException;
 
@@ -44,39 +47,28 @@ import java.util.Optional;
 public class JsonPartialValidatorPeer implements ValidatorPeer {
     private final JsonSchema schema;
     private final WsPartialValidateJson validate;
-    private final Reflection.Method method;
-    private final Object instance;
+    private final MethodInvoker method;
 
     public JsonPartialValidatorPeer( WsPartialValidateJson validate, Reflection.Method targetMethod, Object instance, Type type ) {
         this.schema = JsonSchema.schema( validate.schema() );
         this.validate = validate;
-        this.instance = instance;
-        this.method = Reflect.reflect( instance.getClass() )
+        this.method = MethodInvoker.of( Reflect.reflect( instance.getClass() )
             .method( validate.methodName() ) // TODO: replace it with method( method, targetMethod.parameters ),
             //  once the issue with @WsValidate is fixed
-            .orElseThrow( () -> new WsException( "No such method " + validate.methodName() ) );
-    }
-
-    private static Object getValue( Map<Reflection.Parameter, Object> originalValues, String name ) {
-        return originalValues.entrySet()
-            .stream()
-            .filter( p -> p.getKey().name().equals( name ) )
-            .findFirst()
-            .orElseThrow()
-            .getValue();
+            .orElseThrow( () -> new WsException( "No such method " + validate.methodName() ) ), instance );
     }
 
     @Override
     @SneakyThrows
     @SuppressWarnings( "unchecked" )
-    public ValidationErrors validate( Object value, Map<Reflection.Parameter, Object> originalValues ) {
+    public ValidationErrors validate( Object value, ArgumentFrame originalValues ) {
         try {
-            Object objectId = getValue( originalValues, validate.idParameterName() );
+            Object objectId = originalValues.get( validate.idParameterName() );
 
             String id = objectId instanceof Optional
                 ? ( ( Optional<?> ) objectId ).orElseThrow().toString() : objectId.toString();
 
-            Object root = method.invoke( instance, id );
+            Object root = method.invoke( new Object[] { id } );
 
             if( root == null ) return ValidationErrors.empty();
 
@@ -85,7 +77,9 @@ public class JsonPartialValidatorPeer implements ValidatorPeer {
             log.trace( "Retrieved object [{}] with id [{}]", fetchedRoot, id );
 
             Map<Object, Object> rootMap = Binder.json.unmarshal( Map.class, fetchedRoot );
-            Map<Object, Object> partialValue = Binder.json.unmarshal( Map.class, ( String ) value );
+            Map<Object, Object> partialValue = value instanceof RequestBody body
+                ? body.unmarshal( Map.class )
+                : Binder.json.unmarshal( Map.class, ( String ) value );
 
             Map<Object, Object> child = rootMap;
             for( String pathElement : validate.path().split( "(?<=})\\." ) ) {
@@ -98,7 +92,7 @@ public class JsonPartialValidatorPeer implements ValidatorPeer {
                     Preconditions.checkState( next != null, "schema has no elements for value " + split[0] );
                     Preconditions.checkState( next instanceof List, split[0] + " should be of type list" );
 
-                    Object idValue = ( ( Optional<?> ) getValue( originalValues,
+                    Object idValue = ( ( Optional<?> ) originalValues.get(
                         split[1].replaceAll( "\\$|\\{|\\}", "" ) ) ).orElseThrow();
 
                     Optional<?> matchedChild = ( ( List<Object> ) next ).stream()
@@ -29,6 +29,8 @@ import oap.json.JsonException;
 import oap.json.schema.JsonSchema;
 import oap.reflect.Reflection;
 import oap.util.Strings;
+import oap.ws.ArgumentFrame;
+import oap.ws.RequestBody;
 import oap.ws.WsClientException;
 
 import java.util.Map;
@@ -48,9 +50,11 @@ public class JsonValidatorPeer implements ValidatorPeer {
     }
 
     @Override
-    public ValidationErrors validate( Object value, Map<Reflection.Parameter, Object> originalValues ) {
+    public ValidationErrors validate( Object value, ArgumentFrame originalValues ) {
         try {
-            var mapValue = Binder.json.unmarshal( Map.class, ( String ) value );
+            var mapValue = value instanceof RequestBody body
+                ? body.unmarshal( Map.class )
+                : Binder.json.unmarshal( Map.class, ( String ) value );
             var factory = getJsonSchema( originalValues );
             return ValidationErrors.errors( factory.validate( mapValue, validate.ignoreRequired() ) );
         } catch( JsonException e ) {
@@ -58,25 +62,22 @@ public class JsonValidatorPeer implements ValidatorPeer {
         }
     }
 
-    private JsonSchema getJsonSchema( Map<Reflection.Parameter, Object> originalValues ) {
+    private JsonSchema getJsonSchema( ArgumentFrame originalValues ) {
         if( !dynamic ) return cache.computeIfAbsent( Strings.UNDEFINED, s -> JsonSchema.schema( schemaRef ) );
 
         log.trace( "dynamic schema ref {}", schemaRef );
 
         StringBuilder id = new StringBuilder();
 
-        var ref = Strings.substitute( schemaRef, key -> originalValues
-            .entrySet()
-            .stream()
-            .filter( e -> key.equals( e.getKey().name() ) )
-            .map( e -> {
-                var value = e.getValue().toString();
-                log.trace( "key={}, value={}", e.getKey(), e.getValue() );
-                id.append( value );
-                return value;
-            } )
-            .findAny()
-            .orElse( Strings.UNKNOWN ) );
+        var ref = Strings.substitute( schemaRef, key -> {
+            int index = originalValues.indexOf( key );
+            if( index < 0 ) return Strings.UNKNOWN;
+
+            var value = originalValues.get( index ).toString();
+            log.trace( "key={}, value={}", key, value );
+            id.append( value );
+            return value;
+        } );
 
         return cache.computeIfAbsent( id.toString(), i -> JsonSchema.schema( ref ) );
     }
@@ -23,12 +23,15 @@
  */
 package oap.ws.validate;
 
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import oap.reflect.Reflect;
-import oap.reflect.ReflectException;
 import oap.reflect.Reflection;
 import oap.util.Lists;
 import oap.util.Stream;
+import oap.ws.ArgumentFrame;
+import oap.ws.MethodInvoker;
+import oap.ws.RequestBody;
 import oap.ws.WsException;
 
 import java.util.Arrays;
@@ -49,7 +52,7 @@ public class MethodValidatorPeer implements ValidatorPeer {
     }
 
     @Override
-    public ValidationErrors validate( Object value, Map<Reflection.Parameter, Object> originalValues ) {
+    public ValidationErrors validate( Object value, ArgumentFrame originalValues ) {
         var ret = ValidationErrors.empty();
         for( var validator : validators ) {
             ret = ret.merge( validator.validate( value ) );
@@ -60,7 +63,7 @@ public class MethodValidatorPeer implements ValidatorPeer {
 
     private abstract static class AbstractValidator {
         protected final Reflection.Method method;
-        protected final Object instance;
+        protected final MethodInvoker invoker;
 
         protected AbstractValidator( String method, Reflection.Method targetMethod, Object instance ) {
             this.method = Reflect.reflect( instance.getClass() )
@@ -68,7 +71,7 @@ public class MethodValidatorPeer implements ValidatorPeer {
                 //  once the issue with @WsValidate is fixed
                 .orElseThrow( () -> new WsException( String.format( "No such method %s with the following parameters: %s",
                     method, targetMethod.parameters ) ) );
-            this.instance = instance;
+            this.invoker = MethodInvoker.of( this.method, instance );
         }
 
         abstract ValidationErrors validate( Object value );
@@ -80,8 +83,9 @@ public class MethodValidatorPeer implements ValidatorPeer {
         }
 
         @Override
+        @SneakyThrows
         public ValidationErrors validate( Object value ) {
-            return method.invoke( instance, value );
+            return ( ValidationErrors ) invoker.invoke( new Object[] { RequestBody.text( value ) } );
         }
     }
 
@@ -98,6 +102,7 @@ public class MethodValidatorPeer implements ValidatorPeer {
         }
 
         @Override
+        @SneakyThrows
         ValidationErrors validate( Object value ) {
             Object[] params = new Object[method.parameters.size()];
             for( int i = 0; i < params.length; i++ ) {
@@ -107,11 +112,11 @@ public class MethodValidatorPeer implements ValidatorPeer {
                     throw new IllegalArgumentException( argumentName + " required by validator " + this.method.name()
                         + " is not supplied by web method" );
                 }
-                params[i] = ( ( Object[] ) value )[argumentIndex];
+                params[i] = RequestBody.text( ( ( Object[] ) value )[argumentIndex] );
             }
             try {
-                return method.invoke( instance, params );
-            } catch( ReflectException e ) {
+                return ( ValidationErrors ) invoker.invoke( params );
+            } catch( ClassCastException e ) {
                 log.error( e.getMessage() );
                 log.info( "method = " + method.name() );
                 log.info( "method parameters = " + method.parameters.stream()
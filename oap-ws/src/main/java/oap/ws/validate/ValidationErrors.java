@@ -29,10 +29,12 @@ import oap.http.Http;
 import oap.reflect.Reflection;
 import oap.util.Lists;
 import oap.util.Mergeable;
+import oap.ws.ArgumentFrame;
 import oap.ws.WsClientException;
 
 import javax.annotation.concurrent.Immutable;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +46,7 @@ import static oap.ws.validate.Validators.forParameter;
 @Immutable
 public final class ValidationErrors implements Mergeable<ValidationErrors> {
     public static final int DEFAULT_CODE = Http.StatusCode.BAD_REQUEST;
+    private static final ValidationErrors EMPTY = new ValidationErrors( DEFAULT_CODE, List.of() );
     public final List<String> errors;
     public final int code;
 
@@ -53,7 +56,7 @@ public final class ValidationErrors implements Mergeable<ValidationErrors> {
     }
 
     public static ValidationErrors empty() {
-        return errors( List.of() );
+        return EMPTY;
     }
 
     public static ValidationErrors error( String error ) {
@@ -102,21 +105,32 @@ public final class ValidationErrors implements Mergeable<ValidationErrors> {
     }
 
     public ValidationErrors merge( ValidationErrors otherErrors ) {
+        if( otherErrors == EMPTY ) return this;
+        if( this == EMPTY ) return otherErrors;
         return new ValidationErrors(
             hasDefaultCode() ? otherErrors.code : this.code, concat( this.errors, otherErrors.errors ) );
     }
 
-    public ValidationErrors validateParameters( Map<Reflection.Parameter, Object> values, Reflection.Method method, Object instance, boolean beforeUnmarshaling ) {
+    public ValidationErrors validateParameters( ArgumentFrame values, Reflection.Method method, Object instance, boolean beforeUnmarshaling ) {
         var ret = ValidationErrors.empty();
 
-        for( var entry : values.entrySet() ) {
-            ret = ret.merge( forParameter( method, entry.getKey(), instance, beforeUnmarshaling )
-                .validate( entry.getValue(), values ) );
+        for( int i = 0; i < values.size(); i++ ) {
+            ret = ret.merge( forParameter( method, values.parameter( i ), instance, beforeUnmarshaling )
+                .validate( values.get( i ), values ) );
         }
 
         return ret;
     }
 
+    /**
+     * @deprecated use {@link #validateParameters(ArgumentFrame, Reflection.Method, Object, boolean)}
+     */
+    @Deprecated
+    public ValidationErrors validateParameters( Map<Reflection.Parameter, Object> values, Reflection.Method method, Object instance, boolean beforeUnmarshaling ) {
+        return validateParameters( new ArgumentFrame( new ArrayList<>( values.keySet() ), values.values().toArray() ),
+            method, instance, beforeUnmarshaling );
+    }
+
     public boolean failed() {
         return !errors.isEmpty();
     }
@@ -24,8 +24,10 @@
 package oap.ws.validate;
 
 import oap.reflect.Reflection;
+import oap.ws.ArgumentFrame;
 
 import java.util.Map;
+import java.util.function.BiFunction;
 
 /**
  * This method is called when web services has its parameters checking.
@@ -41,7 +43,14 @@ import java.util.Map;
  */
 @FunctionalInterface
 public interface ValidatorPeer {
-    ValidationErrors validate( Object value, Map<Reflection.Parameter, Object> originalValues );
+    ValidationErrors validate( Object value, ArgumentFrame originalValues );
+
+    /**
+     * Adapts a peer written against the map-based signature, the map is built for every call.
+     */
+    static ValidatorPeer ofMap( BiFunction<Object, Map<Reflection.Parameter, Object>, ValidationErrors> peer ) {
+        return ( value, originalValues ) -> peer.apply( value, originalValues.toMap() );
+    }
 
     enum Type {
         METHOD, PARAMETER
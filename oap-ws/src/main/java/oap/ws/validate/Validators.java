@@ -28,11 +28,11 @@ import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import oap.reflect.Reflect;
 import oap.reflect.Reflection;
+import oap.ws.ArgumentFrame;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -84,7 +84,11 @@ public class Validators {
     public static class Validator {
         private final List<ValidatorPeer> peers = new ArrayList<>();
 
-        public ValidationErrors validate( Object value, Map<Reflection.Parameter, Object> originalValues ) {
+        public boolean isEmpty() {
+            return peers.isEmpty();
+        }
+
+        public ValidationErrors validate( Object value, ArgumentFrame originalValues ) {
             var total = ValidationErrors.empty();
             for( var peer : peers ) {
                 var result = peer.validate( value, originalValues );